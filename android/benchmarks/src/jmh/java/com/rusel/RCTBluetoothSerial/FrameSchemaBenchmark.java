@@ -0,0 +1,71 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decoding of typical sensor frame (flags, three little endian int16
+ * values, timestamp) by compiled schema. Sink only consumes values, so
+ * the score is the cost of schema itself, without bridge maps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FrameSchemaBenchmark {
+    private FrameSchema mSchema;
+    private Frame mFrame;
+    private FrameSchema.Sink mSink;
+
+    @Setup
+    public void setup(final Blackhole bh) {
+        FrameSchema.Field x = new FrameSchema.Field("x", FrameSchema.INT16, 1);
+        FrameSchema.Field y = new FrameSchema.Field("y", FrameSchema.INT16, 3);
+        FrameSchema.Field z = new FrameSchema.Field("z", FrameSchema.INT16, 5);
+        FrameSchema.Field temperature = new FrameSchema.Field("temperature", FrameSchema.INT16, 7);
+        temperature.scale = 0.01;
+        FrameSchema.Field valid = new FrameSchema.Field("valid", FrameSchema.BOOL, 0);
+        FrameSchema.Field mode = new FrameSchema.Field("mode", FrameSchema.BITS, 0);
+        mode.bit = 1;
+        mode.bits = 3;
+        FrameSchema.Field time = new FrameSchema.Field("time", FrameSchema.UINT32, 9);
+        mSchema = new FrameSchema(new FrameSchema.Field[] {valid, mode, x, y, z, temperature, time}, true);
+
+        mFrame = new Frame(16);
+        mFrame.set(new byte[] {0x0B, 0x10, 0x00, (byte) 0xF0, (byte) 0xFF, 0x00, 0x04, 0x4C, 0x09, 0x01, 0x02, 0x03, 0x04}, 0, 13);
+
+        mSink = new FrameSchema.Sink() {
+            @Override
+            public void putInt(String name, int value) {
+                bh.consume(value);
+            }
+
+            @Override
+            public void putDouble(String name, double value) {
+                bh.consume(value);
+            }
+
+            @Override
+            public void putBoolean(String name, boolean value) {
+                bh.consume(value);
+            }
+
+            @Override
+            public void putString(String name, String value) {
+                bh.consume(value);
+            }
+        };
+    }
+
+    @Benchmark
+    public boolean decode() {
+        return mSchema.decode(mFrame, mSink);
+    }
+}
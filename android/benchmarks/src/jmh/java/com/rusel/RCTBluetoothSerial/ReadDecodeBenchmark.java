@@ -0,0 +1,47 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * ISO-8859-1 conversion of single socket read, as the connected thread
+ * used to do for every chunk
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ReadDecodeBenchmark {
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    @Param({"16", "256", "1024"})
+    public int chunkSize;
+
+    private byte[] mBuffer;
+
+    @Setup
+    public void setup() {
+        mBuffer = new byte[1024];
+        new Random(1).nextBytes(mBuffer);
+    }
+
+    @Benchmark
+    public String charsetName() throws UnsupportedEncodingException {
+        return new String(mBuffer, 0, chunkSize, "ISO-8859-1");
+    }
+
+    @Benchmark
+    public String charsetInstance() {
+        return new String(mBuffer, 0, chunkSize, CHARSET);
+    }
+}
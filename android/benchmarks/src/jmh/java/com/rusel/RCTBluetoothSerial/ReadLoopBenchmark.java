@@ -0,0 +1,115 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of the read loop steps over loopback transport: chunk is received,
+ * read into ring buffer and all complete frames are decoded into reused
+ * frame. One operation is one chunk. The loop of the service itself is
+ * checked not to allocate by ReadLoopAllocationTest.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ReadLoopBenchmark {
+    private static final int STREAM_FRAMES = 256;
+
+    @Param({"delimiter", "fixedLength", "lengthField", "slip", "cobs"})
+    public String framing;
+
+    @Param({"16", "256"})
+    public int frameSize;
+
+    @Param({"64", "1024"})
+    public int chunkSize;
+
+    private LoopbackTransport mTransport;
+    private InputStream mInput;
+    private RingBuffer mBuffer;
+    private FrameDecoder mDecoder;
+    private Frame mFrame;
+    private byte[] mStream;
+    private int mOffset;
+
+    @Setup
+    public void setup() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        byte[] payload = new byte[frameSize];
+        for (int i = 0; i < frameSize; i++) {
+            payload[i] = (byte) ('A' + i % 26);
+        }
+
+        for (int n = 0; n < STREAM_FRAMES; n++) {
+            switch (framing) {
+                case "delimiter":
+                    stream.write(payload, 0, frameSize - 1);
+                    stream.write('\n');
+                    break;
+                case "fixedLength":
+                    stream.write(payload);
+                    break;
+                case "lengthField":
+                    stream.write(frameSize >> 8);
+                    stream.write(frameSize);
+                    stream.write(payload);
+                    break;
+                case "slip":
+                    stream.write(payload);
+                    stream.write(0xC0);
+                    break;
+                case "cobs":
+                    // Payload has no zeros, so it is one block when shorter than 254 bytes
+                    for (int off = 0; off < frameSize; off += 254) {
+                        int len = Math.min(254, frameSize - off);
+                        stream.write(len == 254 ? 0xFF : len + 1);
+                        stream.write(payload, off, len);
+                    }
+                    stream.write(0);
+                    break;
+            }
+        }
+        mStream = stream.toByteArray();
+
+        switch (framing) {
+            case "delimiter": mDecoder = new DelimiterFrameDecoder(new byte[] {'\n'}); break;
+            case "fixedLength": mDecoder = new FixedLengthFrameDecoder(frameSize); break;
+            case "lengthField": mDecoder = new LengthFieldFrameDecoder(0, 2, false, 0, 64 * 1024); break;
+            case "slip": mDecoder = new SlipFrameDecoder(64 * 1024); break;
+            case "cobs": mDecoder = new CobsFrameDecoder(64 * 1024); break;
+        }
+
+        mTransport = new LoopbackTransport(64 * 1024);
+        mTransport.connect();
+        mInput = mTransport.getInputStream();
+        mBuffer = new RingBuffer(64 * 1024);
+        mFrame = new Frame(16);
+        mOffset = 0;
+    }
+
+    @Benchmark
+    public void readChunk(Blackhole bh) throws IOException {
+        int len = Math.min(chunkSize, mStream.length - mOffset);
+        mTransport.feed(mStream, mOffset, len);
+        mOffset = mOffset + len == mStream.length ? 0 : mOffset + len;
+
+        while (mInput.available() > 0) {
+            mBuffer.readFrom(mInput);
+            while (mBuffer.readFrame(mDecoder, mFrame)) {
+                bh.consume(mFrame.length);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Receive path: socket chunks are buffered and split into messages by
+ * delimiter. One operation pushes whole stream of 64 KB through the path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReceivePathBenchmark {
+    private static final int STREAM_SIZE = 64 * 1024;
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    @Param({"16", "256", "1024"})
+    public int chunkSize;
+
+    @Param({"16", "128", "1024"})
+    public int frameSize;
+
+    @Param({"1", "2", "4"})
+    public int delimiterLength;
+
+    private byte[] mStream;
+    private byte[] mDelimiter;
+    private String mDelimiterString;
+    private RingBuffer mRing;
+
+    @Setup
+    public void setup() {
+        mDelimiter = new byte[delimiterLength];
+        for (int i = 0; i < delimiterLength; i++) {
+            mDelimiter[i] = (byte) (i + 1); // Never part of payload
+        }
+        mDelimiterString = new String(mDelimiter, CHARSET);
+
+        mStream = new byte[STREAM_SIZE];
+        int payload = Math.max(frameSize - delimiterLength, 1);
+        int pos = 0;
+        while (pos < STREAM_SIZE) {
+            for (int i = 0; i < payload && pos < STREAM_SIZE; i++) {
+                mStream[pos++] = (byte) ('A' + i % 26);
+            }
+            for (int i = 0; i < delimiterLength && pos < STREAM_SIZE; i++) {
+                mStream[pos++] = mDelimiter[i];
+            }
+        }
+
+        mRing = new RingBuffer(STREAM_SIZE);
+    }
+
+    /**
+     * Original path: every chunk is decoded to String, appended to
+     * StringBuffer and at most one message is cut off per chunk.
+     */
+    @Benchmark
+    public void stringBuffer(Blackhole bh) throws UnsupportedEncodingException {
+        StringBuffer buffer = new StringBuffer();
+        for (int off = 0; off < STREAM_SIZE; off += chunkSize) {
+            String data = new String(mStream, off, Math.min(chunkSize, STREAM_SIZE - off), "ISO-8859-1");
+            buffer.append(data);
+
+            String completeData = "";
+            int index = buffer.indexOf(mDelimiterString, 0);
+            if (index > -1) {
+                completeData = buffer.substring(0, index + mDelimiterString.length());
+                buffer.delete(0, index + mDelimiterString.length());
+            }
+            bh.consume(completeData);
+        }
+    }
+
+    /**
+     * Ring buffer path in text mode, every message is decoded to String
+     */
+    @Benchmark
+    public void ringBuffer(Blackhole bh) {
+        mRing.clear();
+        for (int off = 0; off < STREAM_SIZE; off += chunkSize) {
+            mRing.write(mStream, off, Math.min(chunkSize, STREAM_SIZE - off));
+
+            byte[] completeData;
+            while ((completeData = mRing.readUntil(mDelimiter)) != null) {
+                bh.consume(new String(completeData, CHARSET));
+            }
+        }
+    }
+
+    /**
+     * Ring buffer path without String decoding, as in binary mode
+     */
+    @Benchmark
+    public void ringBufferBytes(Blackhole bh) {
+        mRing.clear();
+        for (int off = 0; off < STREAM_SIZE; off += chunkSize) {
+            mRing.write(mStream, off, Math.min(chunkSize, STREAM_SIZE - off));
+
+            byte[] completeData;
+            while ((completeData = mRing.readUntil(mDelimiter)) != null) {
+                bh.consume(completeData);
+            }
+        }
+    }
+}
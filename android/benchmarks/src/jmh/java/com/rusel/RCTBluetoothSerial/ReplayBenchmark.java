@@ -0,0 +1,84 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Plays back recorded session through ring buffer and delimiter decoder as
+ * fast as possible, one operation is the whole log. Pass log pulled from the
+ * phone with -Pjmh.log=path, by default synthetic log of short lines is used.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReplayBenchmark {
+    private static final String DEVICE = "00:00:00:00:00:00";
+
+    @Param({""})
+    public String log;
+
+    private File mFile;
+    private boolean mTemporary;
+    private String mId;
+    private RingBuffer mBuffer;
+    private FrameDecoder mDecoder;
+    private Frame mFrame;
+
+    @Setup
+    public void setup() throws IOException {
+        if (log.isEmpty()) {
+            mFile = File.createTempFile("session", ".bin");
+            mTemporary = true;
+            SessionRecorder recorder = new SessionRecorder(mFile);
+            byte[] line = "$GPGGA,123519,4807.038,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,*47\r\n".getBytes("US-ASCII");
+            for (int i = 0; i < 10000; i++) {
+                recorder.recordIn(DEVICE, line, 0, line.length);
+            }
+            recorder.close();
+            mId = DEVICE;
+        } else {
+            mFile = new File(log);
+            mId = null; // Chunks of all recorded devices
+        }
+
+        mBuffer = new RingBuffer(64 * 1024);
+        mDecoder = new DelimiterFrameDecoder(new byte[] {'\n'});
+        mFrame = new Frame(16);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (mTemporary) mFile.delete();
+    }
+
+    @Benchmark
+    public void replay(Blackhole bh) throws IOException {
+        ReplayTransport transport = new ReplayTransport(mFile, mId, 0);
+        transport.connect();
+        InputStream in = transport.getInputStream();
+        try {
+            while (mBuffer.readFrom(in) >= 0) {
+                while (mBuffer.readFrame(mDecoder, mFrame)) {
+                    bh.consume(mFrame.length);
+                }
+                if (mBuffer.remaining() == 0) mBuffer.clear(); // Data without delimiter
+            }
+        } finally {
+            transport.close();
+            mBuffer.clear();
+        }
+    }
+}
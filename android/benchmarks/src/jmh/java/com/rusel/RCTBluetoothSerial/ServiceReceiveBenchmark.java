@@ -0,0 +1,139 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Whole receive path of the service: connection over loopback transport
+ * reads on its pooled thread into ring buffer and listener decodes frames
+ * into reused frame, like the module does on data event. One operation
+ * sends 256 delimited frames and waits until all of them were decoded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ServiceReceiveBenchmark {
+    private static final String ID = "loopback";
+    private static final int STREAM_FRAMES = 256;
+
+    @Param({"16", "256"})
+    public int frameSize;
+
+    private RCTBluetoothSerialService mService;
+    private LoopbackTransport mTransport;
+    private Listener mListener;
+    private byte[] mStream;
+    private long mExpected;
+
+    @Setup
+    public void setup() throws Exception {
+        mStream = new byte[STREAM_FRAMES * frameSize];
+        for (int i = 0; i < mStream.length; i++) {
+            mStream[i] = i % frameSize == frameSize - 1 ? (byte) '\n' : (byte) ('A' + i % 26);
+        }
+
+        mListener = new Listener();
+        mService = new RCTBluetoothSerialService(mListener, mListener);
+        mListener.mService = mService;
+        mTransport = new LoopbackTransport(64 * 1024);
+        mService.connect(ID, new Transport.Factory() {
+            @Override
+            public Transport create() {
+                return mTransport;
+            }
+        });
+        while (!mService.isConnected(ID)) {
+            Thread.sleep(1);
+        }
+        mExpected = 0;
+    }
+
+    @TearDown
+    public void tearDown() {
+        mService.stop();
+    }
+
+    @Benchmark
+    public long receive() throws IOException {
+        mTransport.feed(mStream, 0, mStream.length);
+        mExpected += STREAM_FRAMES;
+        while (mListener.mFrames < mExpected) {
+            Thread.yield();
+        }
+        return mListener.mFrames;
+    }
+
+    /**
+     * Decodes frames on reader thread, logs only failures
+     */
+    private static class Listener implements ConnectionListener, Logger {
+        private final FrameDecoder mDecoder = new DelimiterFrameDecoder(new byte[] {'\n'});
+        private final Frame mFrame = new Frame(256);
+        private volatile RCTBluetoothSerialService mService;
+        private volatile long mFrames = 0;
+
+        @Override
+        public void onData(String id) {
+            long frames = mFrames;
+            while (mService.readFrame(id, mDecoder, mFrame)) frames++;
+            mFrames = frames;
+        }
+
+        @Override
+        public void onConnectionSuccess(String id, String msg) {
+        }
+
+        @Override
+        public void onConnectionFailed(String id, String msg) {
+        }
+
+        @Override
+        public void onConnectionLost(String id, String msg) {
+        }
+
+        @Override
+        public void onReconnecting(String id, int attempt, long delay) {
+        }
+
+        @Override
+        public void onBufferOverflow(String id) {
+        }
+
+        @Override
+        public void onError(Exception e) {
+            e.printStackTrace();
+        }
+
+        @Override
+        public boolean isLoggable(int priority) {
+            return priority >= ERROR;
+        }
+
+        @Override
+        public void d(String message) {
+        }
+
+        @Override
+        public void i(String message) {
+        }
+
+        @Override
+        public void w(String message) {
+        }
+
+        @Override
+        public void e(String message, Throwable e) {
+            System.err.println(message + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Text lines of NMEA sentences with some UTF-8 characters, split into
+ * lines by CRLF. One operation pushes whole stream of 64 KB through the
+ * decoder, chunks cut multibyte characters at random places.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TextFramingBenchmark {
+    private static final int STREAM_SIZE = 64 * 1024;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Param({"16", "256", "1024"})
+    public int chunkSize;
+
+    private byte[] mStream;
+    private RingBuffer mRing;
+    private Frame mFrame;
+    private FrameDecoder mText;
+    private FrameDecoder mDelimiter;
+
+    @Setup
+    public void setup() {
+        byte[] line = "$GPGGA,092750.000,5321.6802,N,00630.3372,W,1,8,1.03,61.7,M,55.2,M,,*76 \u00B0C \u00B1 \u00E9\r\n".getBytes(UTF8);
+        mStream = new byte[STREAM_SIZE];
+        for (int pos = 0; pos < STREAM_SIZE; pos += line.length) {
+            System.arraycopy(line, 0, mStream, pos, Math.min(line.length, STREAM_SIZE - pos));
+        }
+
+        mRing = new RingBuffer(STREAM_SIZE);
+        mFrame = new Frame(256);
+        mText = new TextFrameDecoder(new String[] {"\r\n", "\n"}, UTF8, 1024, true, true);
+        mDelimiter = new DelimiterFrameDecoder("\r\n".getBytes(UTF8));
+    }
+
+    /**
+     * Text decoder matching CRLF and LF, text decoded while bytes arrive
+     */
+    @Benchmark
+    public void textDecoder(Blackhole bh) {
+        mRing.clear();
+        for (int off = 0; off < STREAM_SIZE; off += chunkSize) {
+            mRing.write(mStream, off, Math.min(chunkSize, STREAM_SIZE - off));
+            while (mText.decode(mRing, mFrame)) {
+                bh.consume(mFrame.text);
+            }
+        }
+    }
+
+    /**
+     * Single delimiter decoder, every complete line decoded to String
+     */
+    @Benchmark
+    public void delimiterDecoder(Blackhole bh) {
+        mRing.clear();
+        for (int off = 0; off < STREAM_SIZE; off += chunkSize) {
+            mRing.write(mStream, off, Math.min(chunkSize, STREAM_SIZE - off));
+            while (mDelimiter.decode(mRing, mFrame)) {
+                bh.consume(new String(mFrame.data, 0, mFrame.length, UTF8));
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Base64 decode of data passed to writeToDevice. android.util.Base64 is
+ * not available on JVM, java.util.Base64 stands in for it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WriteDecodeBenchmark {
+    @Param({"16", "256", "4096"})
+    public int payloadSize;
+
+    private String mMessage;
+
+    @Setup
+    public void setup() {
+        byte[] payload = new byte[payloadSize];
+        new Random(1).nextBytes(payload);
+        mMessage = Base64.getEncoder().encodeToString(payload);
+    }
+
+    @Benchmark
+    public byte[] base64Decode() {
+        return Base64.getDecoder().decode(mMessage);
+    }
+}
@@ -0,0 +1,41 @@
+package com.rusel.RCTBluetoothSerial;
+
+import android.util.Log;
+
+import static com.rusel.RCTBluetoothSerial.RCTBluetoothSerialPackage.LOG_LEVEL;
+import static com.rusel.RCTBluetoothSerial.RCTBluetoothSerialPackage.TAG;
+
+/**
+ * Logger writing to android.util.Log with the tag of the package
+ */
+final class AndroidLogger implements Logger {
+    static final Logger INSTANCE = new AndroidLogger();
+
+    private AndroidLogger() {
+    }
+
+    @Override
+    public boolean isLoggable(int priority) {
+        return priority >= LOG_LEVEL;
+    }
+
+    @Override
+    public void d(String message) {
+        Log.d(TAG, message);
+    }
+
+    @Override
+    public void i(String message) {
+        Log.i(TAG, message);
+    }
+
+    @Override
+    public void w(String message) {
+        Log.w(TAG, message);
+    }
+
+    @Override
+    public void e(String message, Throwable e) {
+        Log.e(TAG, message, e);
+    }
+}
@@ -0,0 +1,162 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.IOException;
+
+import android.util.Log;
+
+import static com.rusel.RCTBluetoothSerial.RCTBluetoothSerialPackage.LOG_LEVEL;
+import static com.rusel.RCTBluetoothSerial.RCTBluetoothSerialPackage.TAG;
+
+/**
+ * Keeps connections alive independently of React context while background
+ * mode is on. The session outlives module instances, a new module picks up
+ * the connections of previous one. Events are passed to the attached module,
+ * while none is attached received data go to the spool, to be drained later.
+ */
+final class BackgroundSession implements ConnectionListener {
+    // Debugging
+    private static final boolean D = LOG_LEVEL <= Log.DEBUG;
+
+    private static BackgroundSession sCurrent; // Guarded by class
+
+    final RCTBluetoothSerialService service;
+    final Spool spool;
+    private volatile ConnectionListener mModule; // Null while detached
+
+    private BackgroundSession(RCTBluetoothSerialService service, Spool spool) {
+        this.service = service;
+        this.spool = spool;
+    }
+
+    /**
+     * @return Running session or null when background mode is off
+     */
+    static synchronized BackgroundSession get() {
+        return sCurrent;
+    }
+
+    /**
+     * Start background mode, service events go through the session from now on
+     * @param service Service owning the connections
+     * @param spool Spool for data received while detached
+     * @return New session, or running one when already started
+     */
+    static synchronized BackgroundSession start(RCTBluetoothSerialService service, Spool spool) {
+        if (sCurrent == null) {
+            sCurrent = new BackgroundSession(service, spool);
+            service.setListener(sCurrent);
+        }
+        return sCurrent;
+    }
+
+    /**
+     * Stop background mode, service events go to the module directly again
+     * @param module Module to receive events
+     */
+    static synchronized void stop(ConnectionListener module) {
+        if (sCurrent != null) {
+            sCurrent.service.setListener(module);
+            sCurrent.mModule = null;
+            sCurrent = null;
+        }
+    }
+
+    /**
+     * Pass events to module
+     * @param module Module to receive events
+     */
+    void attach(ConnectionListener module) {
+        if (D) Log.d(TAG, "Background session attached");
+        mModule = module;
+    }
+
+    /**
+     * Spool received data until some module is attached
+     * @param module Module which was attached, nothing happens if another one was attached meanwhile
+     */
+    void detach(ConnectionListener module) {
+        if (mModule == module) {
+            if (D) Log.d(TAG, "Background session detached");
+            mModule = null;
+        }
+    }
+
+    /**
+     * @return Whether events are passed to a module
+     */
+    boolean isAttached() {
+        return mModule != null;
+    }
+
+    @Override
+    public void onConnectionSuccess(String id, String msg) {
+        ConnectionListener module = mModule;
+        if (module != null) {
+            module.onConnectionSuccess(id, msg);
+        } else if (D) {
+            Log.d(TAG, "Background: " + msg);
+        }
+    }
+
+    @Override
+    public void onConnectionFailed(String id, String msg) {
+        ConnectionListener module = mModule;
+        if (module != null) {
+            module.onConnectionFailed(id, msg);
+        } else if (D) {
+            Log.d(TAG, "Background: " + msg + " " + id);
+        }
+    }
+
+    @Override
+    public void onConnectionLost(String id, String msg) {
+        ConnectionListener module = mModule;
+        if (module != null) {
+            module.onConnectionLost(id, msg);
+        } else if (D) {
+            Log.d(TAG, "Background: " + msg + " " + id);
+        }
+    }
+
+    @Override
+    public void onReconnecting(String id, int attempt, long delay) {
+        ConnectionListener module = mModule;
+        if (module != null) {
+            module.onReconnecting(id, attempt, delay);
+        }
+    }
+
+    @Override
+    public void onData(String id) {
+        ConnectionListener module = mModule;
+        if (module != null) {
+            module.onData(id);
+            return;
+        }
+
+        byte[] data = service.read(id);
+        try {
+            spool.append(id, data, 0, data.length);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to spool " + data.length + " bytes from " + id, e);
+        }
+    }
+
+    @Override
+    public void onBufferOverflow(String id) {
+        ConnectionListener module = mModule;
+        if (module != null) {
+            module.onBufferOverflow(id);
+        }
+    }
+
+    @Override
+    public void onError(Exception e) {
+        ConnectionListener module = mModule;
+        if (module != null) {
+            module.onError(e);
+        } else {
+            Log.e(TAG, "Background: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+import android.util.Log;
+
+import static com.rusel.RCTBluetoothSerial.RCTBluetoothSerialPackage.LOG_LEVEL;
+import static com.rusel.RCTBluetoothSerial.RCTBluetoothSerialPackage.TAG;
+
+/**
+ * Transport over RFCOMM socket using serial port profile. Socket can be
+ * created in several ways and not every device accepts all of them, each
+ * transport uses one strategy. The one which worked last time is remembered
+ * per device, so it can be tried first.
+ */
+class BluetoothTransport implements Transport {
+    // Debugging
+    private static final boolean D = LOG_LEVEL <= Log.DEBUG;
+
+    // UUIDs
+    private static final UUID UUID_SPP = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+
+    /**
+     * Way of creating RFCOMM socket, in order in which they are tried
+     */
+    enum Strategy {
+        SECURE,
+        // Some 4.1 devices have problems, try an alternative way to connect
+        // See https://github.com/don/RCTBluetoothSerialModule/issues/89
+        CHANNEL_1,
+        INSECURE
+    }
+
+    // Strategy which connected last time, by device address
+    private static final ConcurrentHashMap<String, Strategy> sStrategies = new ConcurrentHashMap<>();
+    private static Method sCreateRfcommSocket;
+
+    private final BluetoothAdapter mAdapter;
+    private final BluetoothDevice mDevice;
+    private final Strategy mStrategy;
+    private volatile BluetoothSocket mSocket;
+    private volatile boolean mClosed = false;
+
+    BluetoothTransport(BluetoothAdapter adapter, BluetoothDevice device, Strategy strategy) {
+        mAdapter = adapter;
+        mDevice = device;
+        mStrategy = strategy;
+    }
+
+    /**
+     * Factory racing transports of every strategy for device
+     * @param adapter Adapter, discovery is canceled before connecting
+     * @param device Device to connect to
+     * @param service Service with connect options
+     * @return Factory for connection
+     */
+    static Transport.Factory factory(final BluetoothAdapter adapter, final BluetoothDevice device,
+                                     final RCTBluetoothSerialService service) {
+        return new Transport.Factory() {
+            @Override
+            public Transport create() {
+                List<Transport> candidates = new ArrayList<>();
+                for (Strategy strategy : getStrategies(device.getAddress())) {
+                    candidates.add(new BluetoothTransport(adapter, device, strategy));
+                }
+                return service.race(candidates);
+            }
+        };
+    }
+
+    /**
+     * Get strategies to try for device, the one which worked last time goes first
+     * @param address Device address
+     * @return Strategies in order
+     */
+    static List<Strategy> getStrategies(String address) {
+        List<Strategy> strategies = new ArrayList<>();
+        Strategy cached = sStrategies.get(address);
+        if (cached != null) strategies.add(cached);
+        for (Strategy strategy : Strategy.values()) {
+            if (strategy != cached) strategies.add(strategy);
+        }
+        return strategies;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        // Discovery slows down a connection, cancel it only when running as cancel is not free
+        if (mAdapter != null && mAdapter.isDiscovering()) mAdapter.cancelDiscovery();
+
+        String address = mDevice.getAddress();
+        try {
+            mSocket = createSocket(mStrategy);
+            if (mClosed) throw new IOException("Transport closed");
+
+            // This is a blocking call and will only return on a successful connection or an exception
+            if (D) Log.d(TAG, "Connecting " + mStrategy + " socket...");
+            mSocket.connect();
+            if (D) Log.d(TAG, "Connected");
+        } catch (IOException e) {
+            closeSocket();
+            if (mClosed) throw new IOException("Transport closed");
+
+            Log.w(TAG, mStrategy + " connect to " + address + " failed: " + e.getMessage());
+            sStrategies.remove(address, mStrategy);
+            throw e;
+        }
+        sStrategies.put(address, mStrategy);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return mSocket.getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return mSocket.getOutputStream();
+    }
+
+    @Override
+    public String getName() {
+        return mDevice.getName();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mClosed = true;
+        BluetoothSocket socket = mSocket;
+        if (socket != null) socket.close();
+    }
+
+    private BluetoothSocket createSocket(Strategy strategy) throws IOException {
+        switch (strategy) {
+            case SECURE:
+                return mDevice.createRfcommSocketToServiceRecord(UUID_SPP);
+            case INSECURE:
+                return mDevice.createInsecureRfcommSocketToServiceRecord(UUID_SPP);
+            default:
+                try {
+                    return (BluetoothSocket) getCreateRfcommSocket().invoke(mDevice, 1);
+                } catch (Exception e) {
+                    throw new IOException(e.toString());
+                }
+        }
+    }
+
+    /**
+     * Hidden createRfcommSocket method, looked up once
+     */
+    private static synchronized Method getCreateRfcommSocket() throws NoSuchMethodException {
+        if (sCreateRfcommSocket == null) {
+            sCreateRfcommSocket = BluetoothDevice.class.getMethod("createRfcommSocket", int.class);
+        }
+        return sCreateRfcommSocket;
+    }
+
+    private void closeSocket() {
+        try {
+            if (mSocket != null) mSocket.close();
+        } catch (Exception e) {
+            Log.e(TAG, "close() of connect socket failed", e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.ArrayDeque;
+
+/**
+ * Pool of byte arrays in power of two sizes, so write buffers are reused
+ * instead of allocated for every write. Arrays larger than the largest
+ * size class are allocated and left to garbage collector.
+ */
+final class BytePool {
+    private static final int MIN_SHIFT = 6;  // 64 bytes
+    private static final int MAX_SHIFT = 16; // 64 KB
+    private static final int MAX_PER_CLASS = 8;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<byte[]>[] mClasses = new ArrayDeque[MAX_SHIFT - MIN_SHIFT + 1];
+
+    BytePool() {
+        for (int i = 0; i < mClasses.length; i++) {
+            mClasses[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Get array with at least given length, it may contain old data
+     * @param size Minimal length
+     * @return Array from pool or new array
+     */
+    byte[] acquire(int size) {
+        int index = sizeClass(size);
+        if (index >= mClasses.length) return new byte[size];
+
+        synchronized (this) {
+            byte[] buffer = mClasses[index].poll();
+            if (buffer != null) return buffer;
+        }
+        return new byte[1 << (index + MIN_SHIFT)];
+    }
+
+    /**
+     * Return array to pool, it must not be used afterwards
+     * @param buffer Array taken by acquire
+     */
+    void release(byte[] buffer) {
+        int index = sizeClass(buffer.length);
+        if (index >= mClasses.length || buffer.length != 1 << (index + MIN_SHIFT)) return;
+
+        synchronized (this) {
+            if (mClasses[index].size() < MAX_PER_CLASS) {
+                mClasses[index].push(buffer);
+            }
+        }
+    }
+
+    private static int sizeClass(int size) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1); // Round up to power of two
+        return Math.max(shift, MIN_SHIFT) - MIN_SHIFT;
+    }
+}
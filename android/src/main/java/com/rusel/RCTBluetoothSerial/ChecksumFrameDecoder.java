@@ -0,0 +1,44 @@
+package com.rusel.RCTBluetoothSerial;
+
+/**
+ * Validation stage on top of another decoder. Only frames with valid
+ * checksum come out of it, corrupt frames are handed to listener and
+ * dropped before anything is converted for javascript.
+ */
+final class ChecksumFrameDecoder implements FrameDecoder {
+    /**
+     * Gets every corrupt frame, called with read buffer locked
+     */
+    interface Listener {
+        void onCorruptFrame(Frame frame, FrameChecksum checksum);
+    }
+
+    private final FrameDecoder mDecoder;
+    private final FrameChecksum mChecksum;
+    private final Listener mListener;
+
+    /**
+     * @param decoder Framing decoder, owned by this one
+     * @param checksum Checksum of frames
+     * @param listener Gets corrupt frames
+     */
+    ChecksumFrameDecoder(FrameDecoder decoder, FrameChecksum checksum, Listener listener) {
+        mDecoder = decoder;
+        mChecksum = checksum;
+        mListener = listener;
+    }
+
+    @Override
+    public boolean decode(RingBuffer buffer, Frame frame) {
+        while (mDecoder.decode(buffer, frame)) {
+            if (mChecksum.validate(frame)) return true;
+            mListener.onCorruptFrame(frame, mChecksum);
+        }
+        return false;
+    }
+
+    @Override
+    public FrameDecoder copy() {
+        return new ChecksumFrameDecoder(mDecoder.copy(), mChecksum, mListener);
+    }
+}
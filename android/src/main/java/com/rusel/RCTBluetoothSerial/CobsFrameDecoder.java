@@ -0,0 +1,79 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.Arrays;
+
+/**
+ * COBS encoded frames separated by zero byte. Frames are decoded while
+ * bytes arrive, zero implied by a block is appended only when the next
+ * block starts, so the frame needs no pass after terminator is received.
+ * Malformed frames are dropped.
+ */
+final class CobsFrameDecoder implements FrameDecoder {
+    private final int mMaxLength;
+    private byte[] mFrame = new byte[64];
+    private int mLength = 0;
+    private int mRemaining = 0;       // Data bytes left in current block
+    private boolean mPendingZero = false; // Previous block implies zero if frame continues
+    private boolean mInvalid = false;
+
+    /**
+     * @param maxLength Maximal length of decoded frame, longer frames are dropped
+     */
+    CobsFrameDecoder(int maxLength) {
+        mMaxLength = maxLength;
+    }
+
+    @Override
+    public boolean decode(RingBuffer buffer, Frame frame) {
+        int size = buffer.size();
+        int i = 0;
+        while (i < size) {
+            byte b = buffer.peek(i++);
+
+            if (b == 0) {
+                buffer.skip(i);
+                size -= i;
+                i = 0;
+                // Frame is valid only when last block was complete
+                boolean complete = mLength > 0 && mRemaining == 0 && !mInvalid;
+                if (complete) frame.set(mFrame, 0, mLength);
+                mLength = 0;
+                mRemaining = 0;
+                mPendingZero = false;
+                mInvalid = false;
+                if (complete) return true;
+                continue; // Empty or dropped frame, go on with the rest
+            }
+
+            if (mRemaining == 0) {
+                // Start of block, b is its code
+                if (mPendingZero) append((byte) 0);
+                int code = b & 0xff;
+                mRemaining = code - 1;
+                mPendingZero = code != 0xff;
+            } else {
+                append(b);
+                mRemaining--;
+            }
+        }
+
+        buffer.skip(size); // Everything is in partial frame now
+        return false;
+    }
+
+    @Override
+    public FrameDecoder copy() {
+        return new CobsFrameDecoder(mMaxLength);
+    }
+
+    private void append(byte b) {
+        if (mLength == mMaxLength) {
+            mInvalid = true;
+            return;
+        }
+        if (mLength == mFrame.length) {
+            mFrame = Arrays.copyOf(mFrame, Math.min(mFrame.length * 2, mMaxLength));
+        }
+        mFrame[mLength++] = b;
+    }
+}
@@ -0,0 +1,20 @@
+package com.rusel.RCTBluetoothSerial;
+
+/**
+ * Receives events of connections managed by RCTBluetoothSerialService
+ */
+interface ConnectionListener {
+    void onConnectionSuccess(String id, String msg);
+
+    void onConnectionFailed(String id, String msg);
+
+    void onConnectionLost(String id, String msg);
+
+    void onReconnecting(String id, int attempt, long delay);
+
+    void onData(String id);
+
+    void onBufferOverflow(String id);
+
+    void onError(Exception e);
+}
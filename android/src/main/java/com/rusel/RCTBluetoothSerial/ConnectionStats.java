@@ -0,0 +1,62 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput and latency metrics of connection to one device. Stats of
+ * device are kept across reconnects, all methods are cheap enough to be
+ * called for every read, write and frame and may be called from any thread.
+ */
+final class ConnectionStats {
+    final StripedCounter bytesIn = new StripedCounter();
+    final StripedCounter bytesOut = new StripedCounter();
+    final StripedCounter framesIn = new StripedCounter();
+    final StripedCounter framesOut = new StripedCounter();
+    final StripedCounter connects = new StripedCounter();
+    final StripedCounter overflows = new StripedCounter();     // Times read buffer got full
+    final StripedCounter droppedBytes = new StripedCounter();  // Bytes lost to full read buffer
+    final StripedCounter corruptFrames = new StripedCounter(); // Frames failing checksum validation
+    final StripedCounter unmatchedFrames = new StripedCounter(); // Frames matching no subscription
+    final Histogram readSizes = new Histogram();    // Bytes per socket read
+    final Histogram writeLatency = new Histogram(); // Nanoseconds from queueing to flush
+    final Histogram emitLag = new Histogram();      // Nanoseconds from receive to event emit
+    private final AtomicLong mBufferHighWater = new AtomicLong();
+    private final long mCreated = System.nanoTime();
+
+    /**
+     * Record socket read
+     * @param bytes Number of bytes read
+     * @param buffered Number of bytes waiting in read buffer after read
+     */
+    void recordRead(int bytes, int buffered) {
+        bytesIn.add(bytes);
+        readSizes.record(bytes);
+
+        long high;
+        while (buffered > (high = mBufferHighWater.get()) && !mBufferHighWater.compareAndSet(high, buffered)) {
+            // Retry
+        }
+    }
+
+    /**
+     * Record write handed to the socket
+     * @param bytes Number of bytes written
+     * @param latency Nanoseconds since write was queued
+     */
+    void recordWrite(int bytes, long latency) {
+        bytesOut.add(bytes);
+        framesOut.increment();
+        writeLatency.record(latency);
+    }
+
+    long bufferHighWater() {
+        return mBufferHighWater.get();
+    }
+
+    /**
+     * @return Milliseconds since first connection to device
+     */
+    long uptime() {
+        return (System.nanoTime() - mCreated) / 1000000;
+    }
+}
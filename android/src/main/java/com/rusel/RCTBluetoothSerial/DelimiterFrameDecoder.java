@@ -0,0 +1,28 @@
+package com.rusel.RCTBluetoothSerial;
+
+/**
+ * Frames end with delimiter, delimiter is part of the frame.
+ * Empty delimiter never completes a frame.
+ */
+final class DelimiterFrameDecoder implements FrameDecoder {
+    private final byte[] mDelimiter;
+
+    DelimiterFrameDecoder(byte[] delimiter) {
+        mDelimiter = delimiter;
+    }
+
+    @Override
+    public boolean decode(RingBuffer buffer, Frame frame) {
+        // Ring buffer remembers how far it has scanned for the delimiter
+        int length = buffer.indexOf(mDelimiter);
+        if (length < 0) return false;
+
+        buffer.read(length, frame);
+        return true;
+    }
+
+    @Override
+    public FrameDecoder copy() {
+        return new DelimiterFrameDecoder(mDelimiter);
+    }
+}
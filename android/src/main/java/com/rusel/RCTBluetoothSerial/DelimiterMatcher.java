@@ -0,0 +1,121 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.ArrayList;
+
+/**
+ * Aho-Corasick automaton finding any of several delimiters in one pass
+ * over bytes. Failure links are folded into full transition table, so
+ * every byte is a single array lookup whatever the number of delimiters.
+ * Matcher never changes after it was created and can be shared, state of
+ * a scan is an int kept by caller.
+ */
+final class DelimiterMatcher {
+    static final int START = 0;
+
+    private final byte[][] mDelimiters;
+    private final int[] mTable;  // Next state by state * 256 + byte
+    private final int[] mMatch;  // Longest delimiter ending in state, -1 for none
+    private final int[] mDepth;  // Length of input suffix state stands for
+
+    /**
+     * @param delimiters Delimiters, none of them empty
+     */
+    DelimiterMatcher(byte[][] delimiters) {
+        if (delimiters.length == 0) throw new IllegalArgumentException("No delimiter");
+        mDelimiters = delimiters;
+
+        // Trie of delimiters, zero is missing transition as start state is never a target
+        ArrayList<int[]> next = new ArrayList<>();
+        ArrayList<Integer> depth = new ArrayList<>();
+        ArrayList<Integer> terminal = new ArrayList<>(); // Delimiter ending in state
+        next.add(new int[256]);
+        depth.add(0);
+        terminal.add(-1);
+        for (int d = 0; d < delimiters.length; d++) {
+            if (delimiters[d].length == 0) throw new IllegalArgumentException("Empty delimiter");
+            int state = START;
+            for (byte b : delimiters[d]) {
+                int c = b & 0xFF;
+                if (next.get(state)[c] == 0) {
+                    next.get(state)[c] = next.size();
+                    next.add(new int[256]);
+                    depth.add(depth.get(state) + 1);
+                    terminal.add(-1);
+                }
+                state = next.get(state)[c];
+            }
+            if (terminal.get(state) < 0) terminal.set(state, d);
+        }
+
+        int count = next.size();
+        mTable = new int[count * 256];
+        mMatch = new int[count];
+        mDepth = new int[count];
+
+        // Breadth first, so failure state of every state is complete before it
+        int[] fail = new int[count];
+        int[] queue = new int[count];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = START;
+        while (head < tail) {
+            int state = queue[head++];
+            int[] children = next.get(state);
+            mDepth[state] = depth.get(state);
+            mMatch[state] = terminal.get(state) >= 0 || state == START
+                ? terminal.get(state) : mMatch[fail[state]];
+
+            for (int c = 0; c < 256; c++) {
+                int child = children[c];
+                if (child != 0) {
+                    fail[child] = state == START ? START : mTable[fail[state] * 256 + c];
+                    mTable[state * 256 + c] = child;
+                    queue[tail++] = child;
+                } else {
+                    mTable[state * 256 + c] = state == START ? START : mTable[fail[state] * 256 + c];
+                }
+            }
+        }
+    }
+
+    /**
+     * @param state Current state
+     * @param b Next byte
+     * @return State after byte
+     */
+    int next(int state, byte b) {
+        return mTable[state * 256 + (b & 0xFF)];
+    }
+
+    /**
+     * @param state Current state
+     * @return Index of longest delimiter ending with last byte, -1 for none
+     */
+    int match(int state) {
+        return mMatch[state];
+    }
+
+    /**
+     * Number of last bytes which may still turn out to be part of delimiter,
+     * bytes before them are certainly not
+     * @param state Current state
+     */
+    int depth(int state) {
+        return mDepth[state];
+    }
+
+    /**
+     * @return Number of delimiters
+     */
+    int count() {
+        return mDelimiters.length;
+    }
+
+    /**
+     * @param index Index of delimiter
+     * @return Delimiter bytes, not to be changed
+     */
+    byte[] get(int index) {
+        return mDelimiters[index];
+    }
+}
@@ -0,0 +1,86 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory copy of paired devices, so listing them does not ask the
+ * bluetooth service for every device again. It is filled once and then
+ * kept up to date from bond state and name change broadcasts.
+ */
+final class DeviceRegistry {
+    /**
+     * Snapshot of device properties
+     */
+    static final class Device {
+        final String address;
+        final String name;
+        final int deviceClass; // -1 when unknown
+
+        Device(String address, String name, int deviceClass) {
+            this.address = address;
+            this.name = name;
+            this.deviceClass = deviceClass;
+        }
+    }
+
+    private final Map<String, Device> mDevices = new LinkedHashMap<>();
+    private boolean mLoaded = false;
+
+    synchronized boolean isLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * Replace content with current paired devices
+     * @param devices All paired devices
+     * @param added Filled with devices which were not registered
+     * @param removed Filled with addresses of devices which are not paired anymore
+     */
+    synchronized void sync(Collection<Device> devices, List<Device> added, List<String> removed) {
+        Map<String, Device> previous = new LinkedHashMap<>(mDevices);
+        mDevices.clear();
+        for (Device device : devices) {
+            mDevices.put(device.address, device);
+            if (previous.remove(device.address) == null) added.add(device);
+        }
+        removed.addAll(previous.keySet());
+        mLoaded = true;
+    }
+
+    /**
+     * Register newly paired device
+     * @return Whether device was not registered before
+     */
+    synchronized boolean put(Device device) {
+        return mDevices.put(device.address, device) == null;
+    }
+
+    /**
+     * Remove device which is not paired anymore
+     * @return Whether device was registered
+     */
+    synchronized boolean remove(String address) {
+        return mDevices.remove(address) != null;
+    }
+
+    /**
+     * Update name of registered device, unknown devices are ignored
+     */
+    synchronized void rename(String address, String name) {
+        Device device = mDevices.get(address);
+        if (device != null) {
+            mDevices.put(address, new Device(address, name, device.deviceClass));
+        }
+    }
+
+    /**
+     * @return Registered devices in order of registration
+     */
+    synchronized List<Device> list() {
+        return new ArrayList<>(mDevices.values());
+    }
+}
@@ -0,0 +1,49 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Criteria of device searched by discovery, device has to match all
+ * criteria which are set. Empty filter matches nothing, so discovery
+ * without filter runs until the end.
+ */
+final class DiscoveryFilter {
+    private final String mNamePrefix;
+    private final Set<Integer> mDeviceClasses;
+    private final Set<String> mAddresses;
+
+    /**
+     * @param namePrefix Device name has to start with it, null for any name
+     * @param deviceClasses Device or major device class has to be one of them, empty for any class
+     * @param addresses Device address has to be one of them, empty for any address
+     */
+    DiscoveryFilter(String namePrefix, Set<Integer> deviceClasses, Set<String> addresses) {
+        mNamePrefix = namePrefix;
+        mDeviceClasses = deviceClasses;
+        mAddresses = new HashSet<>();
+        for (String address : addresses) {
+            mAddresses.add(address.toUpperCase(Locale.US));
+        }
+    }
+
+    boolean isEmpty() {
+        return mNamePrefix == null && mDeviceClasses.isEmpty() && mAddresses.isEmpty();
+    }
+
+    /**
+     * @param address Device address
+     * @param name Device name, may be null when not known yet
+     * @param deviceClass Device class or -1 when unknown
+     * @param majorClass Major device class or -1 when unknown
+     * @return Whether device is the one searched for
+     */
+    boolean matches(String address, String name, int deviceClass, int majorClass) {
+        if (isEmpty()) return false;
+        if (mNamePrefix != null && (name == null || !name.startsWith(mNamePrefix))) return false;
+        if (!mDeviceClasses.isEmpty()
+                && !mDeviceClasses.contains(deviceClass) && !mDeviceClasses.contains(majorClass)) return false;
+        return mAddresses.isEmpty() || (address != null && mAddresses.contains(address.toUpperCase(Locale.US)));
+    }
+}
@@ -0,0 +1,26 @@
+package com.rusel.RCTBluetoothSerial;
+
+/**
+ * All frames have the same length
+ */
+final class FixedLengthFrameDecoder implements FrameDecoder {
+    private final int mLength;
+
+    FixedLengthFrameDecoder(int length) {
+        if (length <= 0) throw new IllegalArgumentException("Frame length must be positive");
+        mLength = length;
+    }
+
+    @Override
+    public boolean decode(RingBuffer buffer, Frame frame) {
+        if (buffer.size() < mLength) return false;
+
+        buffer.read(mLength, frame);
+        return true;
+    }
+
+    @Override
+    public FrameDecoder copy() {
+        return this; // Stateless
+    }
+}
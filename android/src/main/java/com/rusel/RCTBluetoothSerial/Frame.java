@@ -0,0 +1,51 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Reusable holder of one decoded frame. Array grows when a longer frame
+ * arrives and is kept afterwards, so decoding into the same frame does
+ * not allocate once it has seen the longest frame.
+ */
+final class Frame {
+    byte[] data;
+    int length = 0;
+    String text = null; // Decoded by text decoder, null when frame is just bytes
+    Charset charset = null; // Charset of text
+
+    Frame(int capacity) {
+        data = new byte[capacity];
+    }
+
+    /**
+     * Make room for frame of given length, content is not kept
+     * @param capacity Required length
+     * @return Array to write frame to
+     */
+    byte[] ensureCapacity(int capacity) {
+        if (data.length < capacity) {
+            data = new byte[Math.max(capacity, data.length * 2)];
+        }
+        return data;
+    }
+
+    /**
+     * Copy bytes into frame
+     * @param src Source array
+     * @param off Offset in source array
+     * @param len Length of frame
+     */
+    void set(byte[] src, int off, int len) {
+        System.arraycopy(src, off, ensureCapacity(len), 0, len);
+        length = len;
+        text = null;
+    }
+
+    /**
+     * @return Copy of frame bytes
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(data, length);
+    }
+}
@@ -0,0 +1,201 @@
+package com.rusel.RCTBluetoothSerial;
+
+/**
+ * Checksum carried in every frame, with its algorithm and position. The
+ * checksum field is at the end of frame, optionally followed by trailer
+ * which is not covered, like delimiter. Covered data start at offset.
+ * CRCs are table driven, tables are computed once per instance. Instances
+ * are configured right after creation and never change afterwards, so
+ * they can be shared by all devices.
+ */
+final class FrameChecksum {
+    private static final int CRC = 0;
+    private static final int XOR = 1;
+    private static final int SUM = 2;
+
+    private final int mKind;
+    private final int mWidth; // Bits
+    private final int mMask;
+    private final int[] mTable;
+    private final boolean mReflected;
+    private final int mInit;
+    private final int mXorOut;
+
+    // Layout
+    private int mOffset = 0;
+    private int mTrailer = 0;
+    private boolean mLittleEndian = false;
+    private boolean mStrip = true;
+    private boolean mReported = false;
+
+    private FrameChecksum(int kind, int width, long poly, long init, boolean reflected, long xorOut) {
+        if (width < 8 || width > 32 || width % 8 != 0) {
+            throw new IllegalArgumentException("Checksum width has to be 8, 16, 24 or 32 bits, got " + width);
+        }
+        mKind = kind;
+        mWidth = width;
+        mMask = width == 32 ? -1 : (1 << width) - 1;
+        mReflected = reflected;
+        mInit = reflected ? reflect((int) init, width) : (int) init & mMask;
+        mXorOut = (int) xorOut & mMask;
+        mTable = kind == CRC ? createTable((int) poly & mMask) : null;
+    }
+
+    /**
+     * CRC with parameters of Rocksoft model, input and output are reflected together
+     * @param width Bits, 8 to 32 by 8
+     * @param poly Polynomial, not reflected
+     * @param init Initial value, not reflected
+     * @param reflected Whether bytes are processed LSB first
+     * @param xorOut Final XOR
+     */
+    static FrameChecksum crc(int width, long poly, long init, boolean reflected, long xorOut) {
+        return new FrameChecksum(CRC, width, poly, init, reflected, xorOut);
+    }
+
+    /**
+     * Get well known algorithm by name
+     * @param name crc8, crc8maxim, crc16, crc16modbus, crc16xmodem, crc32, xor, sum8 or sum16
+     */
+    static FrameChecksum named(String name) {
+        switch (name) {
+            case "crc8": return crc(8, 0x07, 0, false, 0);
+            case "crc8maxim": return crc(8, 0x31, 0, true, 0);
+            case "crc16": return crc(16, 0x1021, 0xFFFF, false, 0); // CCITT-FALSE
+            case "crc16modbus": return crc(16, 0x8005, 0xFFFF, true, 0);
+            case "crc16xmodem": return crc(16, 0x1021, 0, false, 0);
+            case "crc32": return crc(32, 0x04C11DB7L, 0xFFFFFFFFL, true, 0xFFFFFFFFL);
+            case "xor": return new FrameChecksum(XOR, 8, 0, 0, false, 0);
+            case "sum8": return new FrameChecksum(SUM, 8, 0, 0, false, 0);
+            case "sum16": return new FrameChecksum(SUM, 16, 0, 0, false, 0);
+            default: throw new IllegalArgumentException("Unknown checksum " + name);
+        }
+    }
+
+    /**
+     * Set position of checksum in frame
+     * @param offset Number of leading bytes not covered by checksum
+     * @param trailer Number of bytes after checksum field
+     * @param littleEndian Byte order of checksum field
+     * @return This checksum
+     */
+    FrameChecksum setLayout(int offset, int trailer, boolean littleEndian) {
+        mOffset = offset;
+        mTrailer = trailer;
+        mLittleEndian = littleEndian;
+        return this;
+    }
+
+    /**
+     * @param strip Whether checksum field is removed from valid frames
+     * @param reported Whether corrupt frames are reported, otherwise only counted
+     * @return This checksum
+     */
+    FrameChecksum setHandling(boolean strip, boolean reported) {
+        mStrip = strip;
+        mReported = reported;
+        return this;
+    }
+
+    boolean isReported() {
+        return mReported;
+    }
+
+    /**
+     * @return Checksum field length in bytes
+     */
+    int size() {
+        return mWidth / 8;
+    }
+
+    /**
+     * Compute checksum of data
+     * @param data Bytes
+     * @param off Offset
+     * @param len Length
+     * @return Checksum in low bits
+     */
+    int compute(byte[] data, int off, int len) {
+        int end = off + len;
+        int value;
+        switch (mKind) {
+            case XOR:
+                value = 0;
+                for (int i = off; i < end; i++) value ^= data[i];
+                break;
+            case SUM:
+                value = 0;
+                for (int i = off; i < end; i++) value += data[i] & 0xFF;
+                break;
+            default:
+                value = mInit;
+                if (mReflected) {
+                    for (int i = off; i < end; i++) {
+                        value = mTable[(value ^ data[i]) & 0xFF] ^ (value >>> 8);
+                    }
+                } else {
+                    int shift = mWidth - 8;
+                    for (int i = off; i < end; i++) {
+                        value = (mTable[((value >>> shift) ^ data[i]) & 0xFF] ^ (value << 8)) & mMask;
+                    }
+                }
+                value ^= mXorOut;
+        }
+        return value & mMask;
+    }
+
+    /**
+     * Verify checksum of frame and strip it when configured
+     * @param frame Decoded frame, changed only when valid
+     * @return Whether frame is valid, frames too short to carry checksum are not
+     */
+    boolean validate(Frame frame) {
+        int size = size();
+        int field = frame.length - mTrailer - size;
+        if (field < mOffset) return false;
+
+        byte[] data = frame.data;
+        int expected = 0;
+        for (int i = 0; i < size; i++) {
+            int b = data[field + (mLittleEndian ? size - 1 - i : i)] & 0xFF;
+            expected = (expected << 8) | b;
+        }
+        if (compute(data, mOffset, field - mOffset) != expected) return false;
+
+        if (mStrip) {
+            System.arraycopy(data, field + size, data, field, mTrailer);
+            frame.length -= size;
+            // Text was decoded with checksum field in it
+            if (frame.text != null) frame.text = new String(data, 0, frame.length, frame.charset);
+        }
+        return true;
+    }
+
+    private int[] createTable(int poly) {
+        int[] table = new int[256];
+        if (mReflected) {
+            int reflectedPoly = reflect(poly, mWidth);
+            for (int i = 0; i < 256; i++) {
+                int crc = i;
+                for (int bit = 0; bit < 8; bit++) {
+                    crc = (crc & 1) != 0 ? (crc >>> 1) ^ reflectedPoly : crc >>> 1;
+                }
+                table[i] = crc;
+            }
+        } else {
+            int top = 1 << (mWidth - 1);
+            for (int i = 0; i < 256; i++) {
+                int crc = i << (mWidth - 8);
+                for (int bit = 0; bit < 8; bit++) {
+                    crc = (crc & top) != 0 ? (crc << 1) ^ poly : crc << 1;
+                }
+                table[i] = crc & mMask;
+            }
+        }
+        return table;
+    }
+
+    private static int reflect(int value, int width) {
+        return Integer.reverse(value) >>> (32 - width);
+    }
+}
@@ -0,0 +1,22 @@
+package com.rusel.RCTBluetoothSerial;
+
+/**
+ * Splits received bytes into frames. Decoder works incrementally, bytes it
+ * has already checked are either consumed into its own state or remembered,
+ * so they are never scanned again. Decoders keep state of partial frame,
+ * every connection needs its own instance.
+ */
+interface FrameDecoder {
+    /**
+     * Take next complete frame out of buffer, called with buffer locked
+     * @param buffer Read buffer
+     * @param frame Frame to decode into, its content is replaced
+     * @return Whether complete frame was decoded
+     */
+    boolean decode(RingBuffer buffer, Frame frame);
+
+    /**
+     * @return New decoder with the same configuration and empty state
+     */
+    FrameDecoder copy();
+}
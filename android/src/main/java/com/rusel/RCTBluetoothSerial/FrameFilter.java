@@ -0,0 +1,104 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.regex.Pattern;
+
+/**
+ * Criteria of frames delivered to one subscription, frame has to match
+ * all criteria which are set. Bytes are compared in place in the frame.
+ * Regular expression runs over text of frames decoded by text framing,
+ * for other frames over ISO-8859-1 view of frame bytes, so no string is
+ * created for frames which do not match.
+ */
+final class FrameFilter {
+    private final String mId;
+    private final byte[] mPrefix;
+    private final int mOffset;
+    private final byte[] mMask;
+    private final byte[] mValue;
+    private final Pattern mPattern;
+
+    /**
+     * @param id Device id, null for all devices
+     * @param prefix Frame has to start with these bytes, null for any
+     * @param offset Position of masked bytes
+     * @param mask Bits compared at offset, null to skip comparison
+     * @param value Expected values of masked bits, same length as mask
+     * @param pattern Pattern found in frame text, null for any
+     */
+    FrameFilter(String id, byte[] prefix, int offset, byte[] mask, byte[] value, Pattern pattern) {
+        if (mask != null && (value == null || value.length != mask.length)) {
+            throw new IllegalArgumentException("Mask and value have to be of the same length");
+        }
+        mId = id;
+        mPrefix = prefix;
+        mOffset = offset;
+        mMask = mask;
+        mValue = value;
+        mPattern = pattern;
+    }
+
+    /**
+     * @param id Device id
+     * @param frame Decoded frame
+     * @return Whether frame of device matches all criteria
+     */
+    boolean matches(String id, Frame frame) {
+        if (mId != null && !mId.equalsIgnoreCase(id)) return false;
+
+        byte[] data = frame.data;
+        if (mPrefix != null) {
+            if (frame.length < mPrefix.length) return false;
+            for (int i = 0; i < mPrefix.length; i++) {
+                if (data[i] != mPrefix[i]) return false;
+            }
+        }
+
+        if (mMask != null) {
+            if (frame.length < mOffset + mMask.length) return false;
+            for (int i = 0; i < mMask.length; i++) {
+                if ((data[mOffset + i] & mMask[i]) != (mValue[i] & mMask[i])) return false;
+            }
+        }
+
+        if (mPattern == null) return true;
+        CharSequence text = frame.text != null ? frame.text : new Latin1Sequence(data, 0, frame.length);
+        return mPattern.matcher(text).find();
+    }
+
+    /**
+     * Characters of bytes decoded as ISO-8859-1, without copying them
+     */
+    private static final class Latin1Sequence implements CharSequence {
+        private final byte[] mData;
+        private final int mStart;
+        private final int mLength;
+
+        Latin1Sequence(byte[] data, int start, int length) {
+            mData = data;
+            mStart = start;
+            mLength = length;
+        }
+
+        @Override
+        public int length() {
+            return mLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (mData[mStart + index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new Latin1Sequence(mData, mStart + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[mLength];
+            for (int i = 0; i < mLength; i++) chars[i] = charAt(i);
+            return new String(chars);
+        }
+    }
+}
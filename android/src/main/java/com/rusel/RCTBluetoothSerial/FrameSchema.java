@@ -0,0 +1,220 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.nio.charset.Charset;
+
+/**
+ * Fixed binary layout of frame, decoded into named typed fields. Fields
+ * are compiled into parallel arrays once, so decoding a frame is a loop
+ * of array reads and shifts, without reflection or lookups. Schema never
+ * changes after it was created and can be shared by all devices.
+ */
+final class FrameSchema {
+    static final int INT8 = 0;
+    static final int UINT8 = 1;
+    static final int INT16 = 2;
+    static final int UINT16 = 3;
+    static final int INT32 = 4;
+    static final int UINT32 = 5;
+    static final int FLOAT32 = 6;
+    static final int FLOAT64 = 7;
+    static final int BITS = 8;   // Unsigned bit field of one byte
+    static final int BOOL = 9;   // Single bit
+    static final int STRING = 10; // ISO-8859-1 characters, up to first zero byte
+
+    private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+    /**
+     * Receives decoded fields
+     */
+    interface Sink {
+        void putInt(String name, int value);
+        void putDouble(String name, double value);
+        void putBoolean(String name, boolean value);
+        void putString(String name, String value);
+    }
+
+    /**
+     * Definition of one field
+     */
+    static final class Field {
+        final String name;
+        final int type;
+        final int offset;
+        int length = 0;     // Bytes of string
+        int bit = 0;        // Lowest bit of bit field
+        int bits = 1;       // Width of bit field
+        double scale = 1;   // Numbers are multiplied by it, result is double when not 1
+        Boolean littleEndian = null; // Byte order of schema when null
+
+        Field(String name, int type, int offset) {
+            this.name = name;
+            this.type = type;
+            this.offset = offset;
+        }
+    }
+
+    // Compiled fields
+    private final String[] mNames;
+    private final int[] mTypes;
+    private final int[] mOffsets;
+    private final int[] mParams; // Length of string, shift of bit field
+    private final int[] mMasks;  // Mask of bit field
+    private final boolean[] mLittleEndian;
+    private final double[] mScales;
+    private final int mMinLength;
+
+    /**
+     * Compile fields
+     * @param fields Field definitions
+     * @param littleEndian Default byte order of multi-byte fields
+     */
+    FrameSchema(Field[] fields, boolean littleEndian) {
+        int n = fields.length;
+        mNames = new String[n];
+        mTypes = new int[n];
+        mOffsets = new int[n];
+        mParams = new int[n];
+        mMasks = new int[n];
+        mLittleEndian = new boolean[n];
+        mScales = new double[n];
+
+        int minLength = 0;
+        for (int i = 0; i < n; i++) {
+            Field field = fields[i];
+            if (field.offset < 0) {
+                throw new IllegalArgumentException("Negative offset of field " + field.name);
+            }
+            mNames[i] = field.name;
+            mTypes[i] = field.type;
+            mOffsets[i] = field.offset;
+            mLittleEndian[i] = field.littleEndian != null ? field.littleEndian : littleEndian;
+            mScales[i] = field.scale;
+
+            switch (field.type) {
+                case BITS:
+                case BOOL:
+                    int bits = field.type == BOOL ? 1 : field.bits;
+                    if (field.bit < 0 || bits < 1 || field.bit + bits > 8) {
+                        throw new IllegalArgumentException("Bit field " + field.name + " does not fit into byte");
+                    }
+                    mParams[i] = field.bit;
+                    mMasks[i] = (1 << bits) - 1;
+                    break;
+                case STRING:
+                    mParams[i] = field.length;
+                    break;
+            }
+            minLength = Math.max(minLength, field.offset + size(field.type, field.length));
+        }
+        mMinLength = minLength;
+    }
+
+    /**
+     * Get type by name
+     * @param name int8, uint8, int16, uint16, int32, uint32, float32, float64, bits, bool or string
+     */
+    static int type(String name) {
+        switch (name) {
+            case "int8": return INT8;
+            case "uint8": return UINT8;
+            case "int16": return INT16;
+            case "uint16": return UINT16;
+            case "int32": return INT32;
+            case "uint32": return UINT32;
+            case "float32": return FLOAT32;
+            case "float64": return FLOAT64;
+            case "bits": return BITS;
+            case "bool": return BOOL;
+            case "string": return STRING;
+            default: throw new IllegalArgumentException("Unknown field type " + name);
+        }
+    }
+
+    /**
+     * @return Minimal frame length which holds all fields
+     */
+    int minLength() {
+        return mMinLength;
+    }
+
+    /**
+     * Decode all fields of frame
+     * @param frame Decoded frame
+     * @param sink Receives fields in order of definition
+     * @return False when frame is too short, nothing is decoded then
+     */
+    boolean decode(Frame frame, Sink sink) {
+        if (frame.length < mMinLength) return false;
+
+        byte[] data = frame.data;
+        for (int i = 0; i < mTypes.length; i++) {
+            int off = mOffsets[i];
+            boolean le = mLittleEndian[i];
+            long value;
+            switch (mTypes[i]) {
+                case INT8: value = data[off]; break;
+                case UINT8: value = data[off] & 0xFF; break;
+                case INT16: value = (short) read(data, off, 2, le); break;
+                case UINT16: value = read(data, off, 2, le); break;
+                case INT32: value = (int) read(data, off, 4, le); break;
+                case UINT32: value = read(data, off, 4, le); break;
+                case FLOAT32:
+                    sink.putDouble(mNames[i], Float.intBitsToFloat((int) read(data, off, 4, le)) * mScales[i]);
+                    continue;
+                case FLOAT64:
+                    sink.putDouble(mNames[i], Double.longBitsToDouble(read(data, off, 8, le)) * mScales[i]);
+                    continue;
+                case BITS: value = (data[off] >> mParams[i]) & mMasks[i]; break;
+                case BOOL:
+                    sink.putBoolean(mNames[i], ((data[off] >> mParams[i]) & 1) != 0);
+                    continue;
+                default: // STRING
+                    int end = off;
+                    while (end < off + mParams[i] && data[end] != 0) end++;
+                    sink.putString(mNames[i], new String(data, off, end - off, LATIN1));
+                    continue;
+            }
+
+            // Whole numbers stay ints for javascript unless they do not fit or are scaled
+            if (mScales[i] != 1) {
+                sink.putDouble(mNames[i], value * mScales[i]);
+            } else if (value == (int) value) {
+                sink.putInt(mNames[i], (int) value);
+            } else {
+                sink.putDouble(mNames[i], value);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read unsigned number of given byte count
+     */
+    private static long read(byte[] data, int off, int bytes, boolean littleEndian) {
+        long value = 0;
+        if (littleEndian) {
+            for (int i = bytes - 1; i >= 0; i--) value = (value << 8) | (data[off + i] & 0xFF);
+        } else {
+            for (int i = 0; i < bytes; i++) value = (value << 8) | (data[off + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static int size(int type, int length) {
+        switch (type) {
+            case INT16:
+            case UINT16:
+                return 2;
+            case INT32:
+            case UINT32:
+            case FLOAT32:
+                return 4;
+            case FLOAT64:
+                return 8;
+            case STRING:
+                return length;
+            default:
+                return 1;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non negative values with power of two buckets. Bucket i
+ * counts values which have i significant bits, so recording is a few
+ * instructions and percentiles are exact to a factor of two.
+ */
+final class Histogram {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+    private final StripedCounter mCount = new StripedCounter();
+    private final StripedCounter mSum = new StripedCounter();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Record value, negative values are counted as zero
+     * @param value Value
+     */
+    void record(long value) {
+        if (value < 0) value = 0;
+        mBuckets.incrementAndGet(bucket(value));
+        mCount.increment();
+        mSum.add(value);
+
+        long max;
+        while (value > (max = mMax.get()) && !mMax.compareAndSet(max, value)) {
+            // Retry
+        }
+    }
+
+    long count() {
+        return mCount.sum();
+    }
+
+    long sum() {
+        return mSum.sum();
+    }
+
+    long max() {
+        return mMax.get();
+    }
+
+    /**
+     * Number of values in bucket
+     * @param bucket Bucket index, values up to upperBound(bucket)
+     */
+    long bucketCount(int bucket) {
+        return mBuckets.get(bucket);
+    }
+
+    /**
+     * Number of buckets up to and including the highest non empty one
+     */
+    int usedBuckets() {
+        return bucket(mMax.get()) + 1;
+    }
+
+    /**
+     * Largest value counted in bucket
+     */
+    static long upperBound(int bucket) {
+        return bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    /**
+     * Estimate percentile as upper bound of bucket where it falls, capped by max
+     * @param percentile Percentile between 0 and 100
+     * @return Estimated value or 0 when nothing was recorded
+     */
+    long percentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = mBuckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) return 0;
+
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(upperBound(i), mMax.get());
+            }
+        }
+        return mMax.get();
+    }
+
+    private static int bucket(long value) {
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+}
@@ -0,0 +1,56 @@
+package com.rusel.RCTBluetoothSerial;
+
+/**
+ * Frames separated by silence instead of delimiter, like Modbus RTU.
+ * Everything received is one frame once no byte came for the idle gap.
+ * Decoder itself only compares time of last write with the clock, the
+ * module checks it again when the gap elapses. When next frame already
+ * started, bytes before its burst are cut as complete frame, so late
+ * check does not merge frames.
+ */
+final class IdleGapFrameDecoder implements FrameDecoder {
+    private final long mGap;
+    private final int mMaxLength;
+
+    /**
+     * @param gap Idle time ending frame in nanoseconds
+     * @param maxLength Maximal length of frame, longer frames are dropped
+     */
+    IdleGapFrameDecoder(long gap, int maxLength) {
+        if (gap <= 0) throw new IllegalArgumentException("Idle gap must be positive");
+        mGap = gap;
+        mMaxLength = maxLength;
+    }
+
+    /**
+     * @return Idle time ending frame in nanoseconds
+     */
+    long getGap() {
+        return mGap;
+    }
+
+    @Override
+    public boolean decode(RingBuffer buffer, Frame frame) {
+        if (buffer.idleGap() != mGap) buffer.setIdleGap(mGap); // Producer marks bursts from now on
+
+        int size = buffer.size(); // Before time of last write, which is then at least as recent
+        if (size == 0) return false;
+        if (System.nanoTime() - buffer.lastWrite() < mGap) {
+            // Bytes before burst which is still coming were followed by silence
+            size = (int) Math.min(buffer.burstStart() - buffer.position(), size);
+            if (size <= 0) return false;
+        }
+
+        if (size > mMaxLength) {
+            buffer.skip(size);
+            return false;
+        }
+        buffer.read(size, frame);
+        return true;
+    }
+
+    @Override
+    public FrameDecoder copy() {
+        return this; // Stateless
+    }
+}
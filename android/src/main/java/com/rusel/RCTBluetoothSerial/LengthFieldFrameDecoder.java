@@ -0,0 +1,62 @@
+package com.rusel.RCTBluetoothSerial;
+
+/**
+ * Frames carry their length in header field. Length of the whole frame is
+ * offset + width + value of the field + adjustment, frames are emitted
+ * including header. When the field holds impossible length, one byte is
+ * dropped and decoder tries to find next frame from there.
+ */
+final class LengthFieldFrameDecoder implements FrameDecoder {
+    private final int mOffset;
+    private final int mWidth;
+    private final boolean mLittleEndian;
+    private final int mAdjustment;
+    private final int mMaxLength;
+
+    /**
+     * @param offset Offset of length field from frame start
+     * @param width Width of length field, 1, 2, 3 or 4 bytes
+     * @param littleEndian Byte order of length field
+     * @param adjustment Added to value of the field to get number of bytes which follow it
+     * @param maxLength Maximal length of whole frame
+     */
+    LengthFieldFrameDecoder(int offset, int width, boolean littleEndian, int adjustment, int maxLength) {
+        if (offset < 0) throw new IllegalArgumentException("Length field offset must not be negative");
+        if (width < 1 || width > 4) throw new IllegalArgumentException("Length field width must be 1 to 4 bytes");
+        mOffset = offset;
+        mWidth = width;
+        mLittleEndian = littleEndian;
+        mAdjustment = adjustment;
+        mMaxLength = maxLength;
+    }
+
+    @Override
+    public boolean decode(RingBuffer buffer, Frame frame) {
+        int header = mOffset + mWidth;
+
+        while (buffer.size() >= header) {
+            long value = 0;
+            for (int i = 0; i < mWidth; i++) {
+                int b = buffer.peek(mOffset + (mLittleEndian ? mWidth - 1 - i : i)) & 0xff;
+                value = (value << 8) | b;
+            }
+
+            long length = header + value + mAdjustment;
+            if (length < header || length > mMaxLength) {
+                buffer.skip(1); // Out of sync, look for next header
+                continue;
+            }
+
+            if (buffer.size() < length) return false;
+
+            buffer.read((int) length, frame);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public FrameDecoder copy() {
+        return this; // Stateless
+    }
+}
@@ -0,0 +1,29 @@
+package com.rusel.RCTBluetoothSerial;
+
+/**
+ * Log output of classes which do not depend on Android, so they can run
+ * on plain JVM. In the app it goes to android.util.Log, see AndroidLogger.
+ */
+interface Logger {
+    // Priorities, the same values as in android.util.Log
+    int VERBOSE = 2;
+    int DEBUG = 3;
+    int INFO = 4;
+    int WARN = 5;
+    int ERROR = 6;
+
+    /**
+     * @param priority Priority of message
+     * @return Whether messages of priority are logged, checked once before
+     *         formatting of debug messages which are not wanted
+     */
+    boolean isLoggable(int priority);
+
+    void d(String message);
+
+    void i(String message);
+
+    void w(String message);
+
+    void e(String message, Throwable e);
+}
@@ -0,0 +1,199 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * In-memory transport. Everything written to it comes back as received
+ * data, and feed simulates data sent by the device. It needs no hardware,
+ * so the whole read and write pipeline can run on plain JVM.
+ */
+class LoopbackTransport implements Transport {
+    private final Pipe mPipe;
+    private final InputStream mInput = new PipeInputStream();
+    private final OutputStream mOutput = new PipeOutputStream();
+    private volatile long mConnectDelay = 0;
+    private volatile IOException mConnectFailure = null;
+
+    /**
+     * @param capacity Number of bytes which can be in transit before writer blocks
+     */
+    LoopbackTransport(int capacity) {
+        mPipe = new Pipe(capacity);
+    }
+
+    /**
+     * Simulate data sent by the device
+     * @param data Bytes
+     * @param off Offset
+     * @param len Length
+     * @throws IOException When transport was closed
+     */
+    void feed(byte[] data, int off, int len) throws IOException {
+        mPipe.write(data, off, len);
+    }
+
+    /**
+     * Simulate slow or unreachable device, for testing of connect pipeline
+     * @param delay Milliseconds connect blocks for, close aborts it
+     * @param failure Thrown by connect after delay, null to connect
+     */
+    void simulateConnect(long delay, IOException failure) {
+        mConnectDelay = delay;
+        mConnectFailure = failure;
+    }
+
+    /**
+     * @return Whether transport was closed, for checks that aborted connects clean up
+     */
+    boolean isClosed() {
+        return mPipe.isClosed();
+    }
+
+    @Override
+    public void connect() throws IOException {
+        mPipe.awaitClose(mConnectDelay);
+        mPipe.ensureOpen();
+        if (mConnectFailure != null) throw mConnectFailure;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return mInput;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return mOutput;
+    }
+
+    @Override
+    public String getName() {
+        return "loopback";
+    }
+
+    @Override
+    public void close() {
+        mPipe.close();
+    }
+
+    private class PipeInputStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return mPipe.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            return mPipe.available();
+        }
+    }
+
+    private class PipeOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            mPipe.write(b, off, len);
+        }
+    }
+
+    /**
+     * Bounded blocking byte pipe, any number of writers and one reader
+     */
+    private static final class Pipe {
+        private final byte[] mData;
+        private int mHead = 0;
+        private int mSize = 0;
+        private boolean mClosed = false;
+
+        Pipe(int capacity) {
+            mData = new byte[capacity];
+        }
+
+        synchronized boolean isClosed() {
+            return mClosed;
+        }
+
+        synchronized void ensureOpen() throws IOException {
+            if (mClosed) throw new IOException("Transport closed");
+        }
+
+        /**
+         * Wait until timeout elapses or pipe is closed
+         */
+        synchronized void awaitClose(long timeout) throws IOException {
+            long deadline = System.currentTimeMillis() + timeout;
+            long remaining;
+            while (!mClosed && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+
+        synchronized int available() {
+            return mSize;
+        }
+
+        synchronized void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                while (mSize == mData.length && !mClosed) {
+                    await();
+                }
+                ensureOpen();
+
+                int tail = (mHead + mSize) % mData.length;
+                int n = Math.min(len, Math.min(mData.length - mSize, mData.length - tail));
+                System.arraycopy(b, off, mData, tail, n);
+                mSize += n;
+                off += n;
+                len -= n;
+                notifyAll();
+            }
+        }
+
+        synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (mSize == 0) {
+                if (mClosed) return -1;
+                await();
+            }
+
+            int n = Math.min(len, Math.min(mSize, mData.length - mHead));
+            System.arraycopy(mData, mHead, b, off, n);
+            mHead = (mHead + n) % mData.length;
+            mSize -= n;
+            notifyAll();
+            return n;
+        }
+
+        synchronized void close() {
+            mClosed = true;
+            notifyAll();
+        }
+
+        private void await() throws IOException {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+}
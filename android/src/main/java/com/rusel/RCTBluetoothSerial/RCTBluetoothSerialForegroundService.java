@@ -0,0 +1,121 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.IBinder;
+import android.util.Log;
+
+import static com.rusel.RCTBluetoothSerial.RCTBluetoothSerialPackage.LOG_LEVEL;
+import static com.rusel.RCTBluetoothSerial.RCTBluetoothSerialPackage.TAG;
+
+/**
+ * Foreground service which keeps the process alive and prioritized while
+ * background mode is on, so the system does not kill connections when the
+ * app is paused or its activity destroyed. Connections themselves are owned
+ * by BackgroundSession, this service only shows the ongoing notification.
+ * APIs newer than the compile SDK (notification channel and foreground
+ * start since Android 8) are called by reflection.
+ */
+public class RCTBluetoothSerialForegroundService extends Service {
+    // Debugging
+    private static final boolean D = LOG_LEVEL <= Log.DEBUG;
+
+    static final String EXTRA_TITLE = "title";
+    static final String EXTRA_TEXT = "text";
+
+    private static final int NOTIFICATION_ID = 0x5e41;
+
+    // Android 8, notification channel is required and service has to be started as foreground
+    private static final int SDK_OREO = 26;
+    private static final String CHANNEL_ID = "bluetooth_serial";
+    private static final int IMPORTANCE_LOW = 2; // NotificationManager.IMPORTANCE_LOW, no sound
+
+    /**
+     * Start the service, as foreground service where the system requires it
+     * @param context Context
+     * @param intent Intent of this service
+     * @throws Exception When the system does not allow to start it, like from background since Android 12
+     */
+    static void start(Context context, Intent intent) throws Exception {
+        if (Build.VERSION.SDK_INT < SDK_OREO) {
+            context.startService(intent);
+            return;
+        }
+
+        Method start = Context.class.getMethod("startForegroundService", Intent.class);
+        try {
+            start.invoke(context, intent);
+        } catch (InvocationTargetException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (D) Log.d(TAG, "Foreground service started");
+
+        String title = intent != null ? intent.getStringExtra(EXTRA_TITLE) : null;
+        String text = intent != null ? intent.getStringExtra(EXTRA_TEXT) : null;
+
+        Notification.Builder builder = new Notification.Builder(this)
+            .setContentTitle(title != null ? title : "Bluetooth connection")
+            .setContentText(text != null ? text : "Receiving data in background")
+            .setSmallIcon(getApplicationInfo().icon)
+            .setOngoing(true);
+        if (Build.VERSION.SDK_INT >= SDK_OREO) {
+            setChannel(builder);
+        }
+
+        Intent launch = getPackageManager().getLaunchIntentForPackage(getPackageName());
+        if (launch != null) {
+            // Android 12 requires mutability to be set
+            int flag = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0;
+            builder.setContentIntent(PendingIntent.getActivity(this, 0, launch, flag));
+        }
+
+        // Foreground start has to be confirmed even when service stops right away
+        startForeground(NOTIFICATION_ID, builder.build());
+
+        if (BackgroundSession.get() == null) {
+            // Restarted after process death, connections are gone
+            stopSelf();
+        }
+        return START_NOT_STICKY;
+    }
+
+    /**
+     * Create notification channel of background mode and put notification in it
+     */
+    private void setChannel(Notification.Builder builder) {
+        try {
+            Class<?> channelClass = Class.forName("android.app.NotificationChannel");
+            Object channel = channelClass.getConstructor(String.class, CharSequence.class, int.class)
+                .newInstance(CHANNEL_ID, "Bluetooth connection", IMPORTANCE_LOW);
+            NotificationManager manager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+            NotificationManager.class.getMethod("createNotificationChannel", channelClass).invoke(manager, channel);
+            Notification.Builder.class.getMethod("setChannelId", String.class).invoke(builder, CHANNEL_ID);
+        } catch (Exception e) {
+            Log.e(TAG, "Unable to create notification channel", e);
+        }
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    public void onDestroy() {
+        if (D) Log.d(TAG, "Foreground service destroyed");
+        stopForeground(true);
+        super.onDestroy();
+    }
+}
@@ -1,11 +1,34 @@
 package com.rusel.RCTBluetoothSerial;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
 import android.app.Activity;
 import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothClass;
 import android.bluetooth.BluetoothDevice;
 import android.content.BroadcastReceiver;
 import android.content.Context;
@@ -24,15 +47,23 @@ import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.ReadableType;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
+import static com.rusel.RCTBluetoothSerial.RCTBluetoothSerialPackage.LOG_LEVEL;
 import static com.rusel.RCTBluetoothSerial.RCTBluetoothSerialPackage.TAG;
 
 @SuppressWarnings("unused")
-public class RCTBluetoothSerialModule extends ReactContextBaseJavaModule implements ActivityEventListener, LifecycleEventListener {
+public class RCTBluetoothSerialModule extends ReactContextBaseJavaModule implements ActivityEventListener, LifecycleEventListener, ConnectionListener {
 
     // Debugging
-    private static final boolean D = true;
+    private static final boolean D = LOG_LEVEL <= Log.DEBUG;
+
+    // Sampled trace of emitted messages
+    private static final TraceSampler EMIT_TRACE = new TraceSampler("emit", AndroidLogger.INSTANCE);
 
     // Event names
     private static final String BT_ENABLED = "bluetoothEnabled";
@@ -40,25 +71,76 @@ public class RCTBluetoothSerialModule extends ReactContextBaseJavaModule impleme
     private static final String CONN_SUCCESS = "connectionSuccess";
     private static final String CONN_FAILED = "connectionFailed";
     private static final String CONN_LOST = "connectionLost";
+    private static final String CONN_RECONNECTING = "reconnecting";
+    private static final String DEVICE_DISCOVERED = "deviceDiscovered";
+    private static final String DISCOVERY_FINISHED = "discoveryFinished";
+    private static final String BONDED_DEVICES_CHANGED = "bondedDevicesChanged";
+    private static final String BUFFER_OVERFLOW = "bufferOverflow";
+    private static final String SPOOL_AVAILABLE = "spoolAvailable";
+    private static final String CORRUPT_FRAME = "corruptFrame";
     private static final String DEVICE_READ = "read";
+    private static final String DEVICE_RAW_READ = "rawData";
     private static final String ERROR = "error";
+    private static final Set<String> RESERVED_EVENTS = new HashSet<>(Arrays.asList(
+        BT_ENABLED, BT_DISABLED, CONN_SUCCESS, CONN_FAILED, CONN_LOST, CONN_RECONNECTING,
+        DEVICE_DISCOVERED, DISCOVERY_FINISHED, BONDED_DEVICES_CHANGED, BUFFER_OVERFLOW,
+        DEVICE_READ, DEVICE_RAW_READ, ERROR, SPOOL_AVAILABLE, CORRUPT_FRAME));
 
     // Other stuff
     private static final int REQUEST_ENABLE_BLUETOOTH = 1;
     private static final int REQUEST_PAIR_DEVICE = 2;
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+    private static final int MAX_FRAME_LENGTH = 16 * 1024;
+    private static final int SPOOL_SIZE = 4 * 1024 * 1024;
+    private static final String SPOOL_DIRECTORY = "RCTBluetoothSerial";
     // Members
     private BluetoothAdapter mBluetoothAdapter;
     private RCTBluetoothSerialService mBluetoothService;
     private ReactApplicationContext mReactContext;
 
-    private StringBuffer mBuffer = new StringBuffer();
-
     // Promises
     private Promise mEnabledPromise;
-    private Promise mConnectedPromise;
+    private final ConcurrentHashMap<String, Promise> mConnectedPromises = new ConcurrentHashMap<>();
     private Promise mDeviceDiscoveryPromise;
+    private BroadcastReceiver mStreamingDiscoveryReceiver;
+    private Promise mStreamingDiscoveryPromise; // Null once settled
+
+    // Background mode
+    private Spool mSpool; // Created on first use, shared with background session
+
+    // Paired devices
+    private final DeviceRegistry mBondedDevices = new DeviceRegistry();
+    private volatile boolean mBondedDevicesSubscribed = false;
     private Promise mPairDevicePromise;
-    private String delimiter = "";
+
+    // Read settings
+    private volatile FrameDecoder mFrameDecoder = new DelimiterFrameDecoder(new byte[0]);
+    private volatile String mFraming = null; // Config of common framing, null when set by delimiter
+    private volatile FrameChecksum mFrameChecksum = null; // Frames are not validated when null
+    private volatile FrameSchema mFrameSchema = null; // Frames are emitted as strings when null
+    private final ConcurrentHashMap<String, FrameSchema> mSchemas = new ConcurrentHashMap<>();
+    private volatile Map<String, Subscription> mSubscriptions = Collections.emptyMap(); // Replaced on change
+    private volatile boolean mDropUnmatched = false;
+    private volatile boolean mBinaryMode = false;
+    private final ConcurrentHashMap<String, DeviceState> mDeviceStates = new ConcurrentHashMap<>();
+    private volatile String mDefaultDevice; // Device used by methods without device id
+
+    // Write buffers
+    private final BytePool mBytePool = new BytePool();
+    private final HashMap<String, CharsetEncoder> mEncoders = new HashMap<>();
+
+    // Read event batching
+    private volatile int mBatchInterval = 0; // 0 means every message is emitted right away
+    private volatile int mBatchMaxBytes = 16 * 1024;
+    private volatile int mBatchMaxPending = 2;
+    private ScheduledExecutorService mEmitScheduler;
+    private final AtomicInteger mPendingBatches = new AtomicInteger();
+    private final Runnable mBatchProcessedTask = new Runnable() {
+        @Override
+        public void run() {
+            onReadBatchProcessed();
+        }
+    };
 
     public RCTBluetoothSerialModule(ReactApplicationContext reactContext) {
         super(reactContext);
@@ -72,7 +154,15 @@ public class RCTBluetoothSerialModule extends ReactContextBaseJavaModule impleme
         }
 
         if (mBluetoothService == null) {
-            mBluetoothService = new RCTBluetoothSerialService(this);
+            BackgroundSession session = BackgroundSession.get();
+            if (session != null) {
+                // Take over connections kept alive by background mode
+                mBluetoothService = session.service;
+                mSpool = session.spool;
+                session.attach(this);
+            } else {
+                mBluetoothService = new RCTBluetoothSerialService(this, AndroidLogger.INSTANCE);
+            }
         }
 
         if (mBluetoothAdapter != null && mBluetoothAdapter.isEnabled()) {
@@ -84,6 +174,7 @@ public class RCTBluetoothSerialModule extends ReactContextBaseJavaModule impleme
         mReactContext.addActivityEventListener(this);
         mReactContext.addLifecycleEventListener(this);
         registerBluetoothStateReceiver();
+        registerBondedDevicesReceiver();
     }
 
     @Override
@@ -127,24 +218,45 @@ public class RCTBluetoothSerialModule extends ReactContextBaseJavaModule impleme
     @Override
     public void onHostResume() {
         if (D) Log.d(TAG, "Host resume");
+        BackgroundSession session = BackgroundSession.get();
+        if (session != null && !session.isAttached()) {
+            session.attach(this);
+            long size = session.spool.size();
+            if (size > 0) {
+                WritableMap params = Arguments.createMap();
+                params.putDouble("bytes", size);
+                sendEvent(SPOOL_AVAILABLE, params);
+            }
+        }
     }
 
     @Override
     public void onHostPause() {
         if (D) Log.d(TAG, "Host pause");
+        BackgroundSession session = BackgroundSession.get();
+        if (session != null) {
+            session.detach(this); // JS may be suspended, spool until resume
+        }
     }
 
     @Override
     public void onHostDestroy() {
         if (D) Log.d(TAG, "Host destroy");
-        mBluetoothService.stop();
+        stopOrDetach();
     }
 
     @Override
     public void onCatalystInstanceDestroy() {
         if (D) Log.d(TAG, "Catalyst instance destroyed");
         super.onCatalystInstanceDestroy();
-        mBluetoothService.stop();
+        stopOrDetach();
+        endStreamingDiscovery(new Exception("Bridge destroyed"));
+        synchronized (this) {
+            if (mEmitScheduler != null) {
+                mEmitScheduler.shutdownNow();
+                mEmitScheduler = null;
+            }
+        }
     }
 
     /*******************************/
@@ -214,8 +326,148 @@ public class RCTBluetoothSerialModule extends ReactContextBaseJavaModule impleme
     }
 
     @ReactMethod
+    /**
+     * Set delimiter of all devices which do not have their own framing
+     */
     public void withDelimiter(String delimiter, Promise promise) {
-        this.delimiter = delimiter;
+        mFrameDecoder = new DelimiterFrameDecoder(delimiter.getBytes(CHARSET));
+        mFraming = null;
+        promise.resolve(true);
+    }
+
+    @ReactMethod
+    /**
+     * Set delimiter of single device, null returns device to common framing
+     */
+    public void withDeviceDelimiter(String id, @Nullable String delimiter, Promise promise) {
+        getDeviceState(id).setDecoder(delimiter != null ? new DelimiterFrameDecoder(delimiter.getBytes(CHARSET)) : null, null);
+        promise.resolve(true);
+    }
+
+    @ReactMethod
+    /**
+     * Set framing of all devices which do not have their own
+     */
+    public void withFrameDecoder(ReadableMap config, Promise promise) {
+        try {
+            mFrameDecoder = createFrameDecoder(config, mBluetoothService.getReadBufferSize(null));
+            mFraming = framingKey(config);
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject(e);
+        }
+    }
+
+    @ReactMethod
+    /**
+     * Set framing of single device, null returns device to common framing
+     */
+    public void withDeviceFrameDecoder(String id, @Nullable ReadableMap config, Promise promise) {
+        try {
+            getDeviceState(id).setDecoder(config != null
+                ? createFrameDecoder(config, mBluetoothService.getReadBufferSize(id))
+                : null, config != null ? framingKey(config) : null);
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject(e);
+        }
+    }
+
+    @ReactMethod
+    /**
+     * Validate checksum of frames of all devices which do not have their own,
+     * null turns validation off
+     */
+    public void withFrameChecksum(@Nullable ReadableMap config, Promise promise) {
+        try {
+            mFrameChecksum = config != null ? createFrameChecksum(config) : null;
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject(e);
+        }
+    }
+
+    @ReactMethod
+    /**
+     * Validate checksum of frames of single device, null returns device to common validation
+     */
+    public void withDeviceFrameChecksum(String id, @Nullable ReadableMap config, Promise promise) {
+        try {
+            getDeviceState(id).setChecksum(config != null ? createFrameChecksum(config) : null);
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject(e);
+        }
+    }
+
+    @ReactMethod
+    /**
+     * Switch between text and binary mode. In binary mode data are emitted
+     * as rawData events and returned from read methods as base64 strings
+     * encoded straight from received bytes.
+     */
+    public void withBinaryMode(boolean enabled, Promise promise) {
+        mBinaryMode = enabled;
+        promise.resolve(true);
+    }
+
+    @ReactMethod
+    /**
+     * Set size of receive buffer of new connections and what happens when it
+     * is full: dropNewest (default), dropOldest or pause reading from device
+     */
+    public void withReceiveBuffer(ReadableMap config, Promise promise) {
+        String overflow = config.hasKey("overflow") && !config.isNull("overflow")
+            ? config.getString("overflow")
+            : "dropNewest";
+
+        RCTBluetoothSerialService.OverflowPolicy policy;
+        switch (overflow) {
+            case "dropNewest":
+                policy = RCTBluetoothSerialService.OverflowPolicy.DROP_NEWEST;
+                break;
+            case "dropOldest":
+                policy = RCTBluetoothSerialService.OverflowPolicy.DROP_OLDEST;
+                break;
+            case "pause":
+                policy = RCTBluetoothSerialService.OverflowPolicy.PAUSE;
+                break;
+            default:
+                promise.reject(new IllegalArgumentException("Unknown overflow policy " + overflow));
+                return;
+        }
+
+        mBluetoothService.setReadBuffer(getInt(config, "size", 64 * 1024), policy);
+        promise.resolve(true);
+    }
+
+    @ReactMethod
+    /**
+     * Log every interval-th socket read, write and emitted message with
+     * its size, works in release builds too. 0 turns tracing off.
+     */
+    public void withTraceSampling(int interval, Promise promise) {
+        TraceSampler.setInterval(interval);
+        promise.resolve(true);
+    }
+
+    @ReactMethod
+    /**
+     * Collect complete messages for given interval or up to given number of
+     * bytes and emit them together in one event with array of messages.
+     * At most maxPending batches are waiting for javascript, when it falls
+     * behind messages are left in read buffer until it catches up.
+     * Interval 0 turns batching off.
+     */
+    public void withReadBatching(int intervalMs, int maxBytes, int maxPending, Promise promise) {
+        mBatchMaxBytes = Math.max(maxBytes, 1);
+        mBatchMaxPending = Math.max(maxPending, 1);
+        mBatchInterval = Math.max(intervalMs, 0);
+        if (mBatchInterval > 0) {
+            for (String id : mDeviceStates.keySet()) {
+                onData(id); // Pick up data which were waiting for end of frame
+            }
+        }
         promise.resolve(true);
     }
 
@@ -227,16 +479,29 @@ public class RCTBluetoothSerialModule extends ReactContextBaseJavaModule impleme
      * List paired bluetooth devices
      */
     public void list(Promise promise) {
-        WritableArray deviceList = Arguments.createArray();
-        if (mBluetoothAdapter != null) {
-            Set<BluetoothDevice> bondedDevices = mBluetoothAdapter.getBondedDevices();
-
-            for (BluetoothDevice rawDevice : bondedDevices) {
-                WritableMap device = deviceToWritableMap(rawDevice);
-                deviceList.pushMap(device);
-            }
+        if (!mBondedDevices.isLoaded()) {
+            syncBondedDevices();
         }
-        promise.resolve(deviceList);
+        promise.resolve(bondedDevicesToWritableArray(mBondedDevices.list()));
+    }
+
+    @ReactMethod
+    /**
+     * Emit bondedDevicesChanged event with added devices and removed ids
+     * whenever device is paired or unpaired, resolves to current list
+     */
+    public void subscribeBondedDevices(Promise promise) {
+        mBondedDevicesSubscribed = true;
+        list(promise);
+    }
+
+    @ReactMethod
+    /**
+     * Stop emitting bondedDevicesChanged events
+     */
+    public void unsubscribeBondedDevices(Promise promise) {
+        mBondedDevicesSubscribed = false;
+        promise.resolve(true);
     }
 
     @ReactMethod
@@ -256,6 +521,30 @@ public class RCTBluetoothSerialModule extends ReactContextBaseJavaModule impleme
         }
     }
 
+    @ReactMethod
+    /**
+     * Discover devices and emit each one with deviceDiscovered event as soon
+     * as it is found. With filter the discovery stops at first matching device
+     * and promise resolves to it, otherwise promise resolves to null when
+     * discovery ends. Filter may have namePrefix, deviceClasses and addresses.
+     */
+    public void startDiscovery(@Nullable ReadableMap filter, Promise promise) {
+        if (D) Log.d(TAG, "Start discovery called");
+
+        if (mBluetoothAdapter == null) {
+            promise.resolve(null);
+            return;
+        }
+
+        if (mBluetoothAdapter.isDiscovering()) {
+            mBluetoothAdapter.cancelDiscovery(); // Start over, so all devices in range are reported
+        }
+        registerStreamingDiscoveryReceiver(createDiscoveryFilter(filter), promise);
+        if (!mBluetoothAdapter.startDiscovery()) {
+            endStreamingDiscovery(new Exception("Unable to start discovery"));
+        }
+    }
+
     @ReactMethod
     /**
      * Cancel discovery
@@ -319,14 +608,31 @@ public class RCTBluetoothSerialModule extends ReactContextBaseJavaModule impleme
 
     @ReactMethod
     /**
-     * Connect to device by id
+     * Connect to device by id, closes all other connections
      */
     public void connect(String id, Promise promise) {
-        mConnectedPromise = promise;
+        for (String device : mDeviceStates.keySet()) {
+            failPending(device, "Connection closed");
+        }
+        mBluetoothService.stop();
+        rejectConnectPromises();
+        connectDevice(id, promise);
+    }
+
+    @ReactMethod
+    /**
+     * Connect to device by id, keeps other connections open
+     */
+    public void connectDevice(String id, Promise promise) {
         if (mBluetoothAdapter != null) {
             BluetoothDevice device = mBluetoothAdapter.getRemoteDevice(id);
             if (device != null) {
-                mBluetoothService.connect(device);
+                Promise previous = mConnectedPromises.put(id, promise);
+                if (previous != null) {
+                    previous.reject(new Exception("Connection canceled"));
+                }
+                mDefaultDevice = id;
+                mBluetoothService.connect(id, BluetoothTransport.factory(mBluetoothAdapter, device, mBluetoothService));
             } else {
                 promise.reject(new Exception("Could not connect to " + id));
             }
@@ -337,184 +643,1540 @@ public class RCTBluetoothSerialModule extends ReactContextBaseJavaModule impleme
 
     @ReactMethod
     /**
-     * Disconnect from device
+     * Set timeout of connect attempts and how socket strategies are raced,
+     * applies to connections started from now on
+     */
+    public void withConnectOptions(ReadableMap config, Promise promise) {
+        mBluetoothService.setConnectOptions(
+            getInt(config, "timeout", 0),
+            getInt(config, "stagger", -1));
+        promise.resolve(true);
+    }
+
+    @ReactMethod
+    /**
+     * Reconnect lost connections automatically with exponential backoff,
+     * null turns it off. Attempts are announced with reconnecting event.
+     */
+    public void withAutoReconnect(@Nullable ReadableMap config, Promise promise) {
+        if (config == null) {
+            mBluetoothService.setReconnectPolicy(null);
+        } else {
+            mBluetoothService.setReconnectPolicy(new ReconnectPolicy(
+                getInt(config, "initialDelay", 500),
+                getInt(config, "maxDelay", 30000),
+                getDouble(config, "multiplier", 2),
+                getDouble(config, "jitter", 0.5),
+                getInt(config, "maxAttempts", 0)));
+        }
+        promise.resolve(true);
+    }
+
+    @ReactMethod
+    /**
+     * Disconnect from all devices
      */
     public void disconnect(Promise promise) {
         mBluetoothService.stop();
+        rejectConnectPromises();
+        for (String id : mDeviceStates.keySet()) {
+            failPending(id, "Connection closed");
+        }
         promise.resolve(true);
     }
 
     @ReactMethod
     /**
-     * Check if device is connected
+     * Disconnect from device by id
+     */
+    public void disconnectDevice(String id, Promise promise) {
+        mBluetoothService.stop(id);
+        Promise pending = mConnectedPromises.remove(id);
+        if (pending != null) {
+            pending.reject(new Exception("Connection canceled"));
+        }
+        failPending(id, "Connection closed");
+        promise.resolve(true);
+    }
+
+    @ReactMethod
+    /**
+     * Check if any device is connected
      */
     public void isConnected(Promise promise) {
         promise.resolve(mBluetoothService.isConnected());
     }
 
+    @ReactMethod
+    /**
+     * Check if device is connected
+     */
+    public void isDeviceConnected(String id, Promise promise) {
+        promise.resolve(mBluetoothService.isConnected(id));
+    }
+
+    @ReactMethod
+    /**
+     * List ids of connected devices
+     */
+    public void connectedDevices(Promise promise) {
+        WritableArray ids = Arguments.createArray();
+        for (String id : mBluetoothService.getConnectedDevices()) {
+            ids.pushString(id);
+        }
+        promise.resolve(ids);
+    }
+
     /*********************/
     /** Write to device **/
 
     @ReactMethod
     /**
-     * Write to device over serial port
+     * Write to last connected device over serial port
      */
     public void writeToDevice(String message, Promise promise) {
-        if (D) Log.d(TAG, "Write " + message);
-        byte[] data = Base64.decode(message, Base64.DEFAULT);
-        mBluetoothService.write(data);
-        promise.resolve(true);
+        writeToConnection(mDefaultDevice, message, promise);
     }
 
-    /**********************/
-    /** Read from device **/
-
     @ReactMethod
     /**
-     * Read from device over serial port
+     * Write to device over serial port
      */
-    public void readFromDevice(Promise promise) {
-        if (D) Log.d(TAG, "Read");
-        int length = mBuffer.length();
-        String data = mBuffer.substring(0, length);
-        mBuffer.delete(0, length);
-        promise.resolve(data);
+    public void writeToConnection(String id, String message, final Promise promise) {
+        byte[] data = Base64.decode(message, Base64.DEFAULT);
+        mBluetoothService.write(id, data, new WriteQueue.Callback() {
+            @Override
+            public void onComplete() {
+                promise.resolve(true);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                promise.reject(e);
+            }
+        });
     }
 
     @ReactMethod
-    public void readUntilDelimiter(String delimiter, Promise promise) {
-        promise.resolve(readUntil(delimiter));
+    /**
+     * Write array of byte values to last connected device
+     */
+    public void writeBytes(ReadableArray bytes, Promise promise) {
+        writeBytesTo(mDefaultDevice, bytes, promise);
     }
 
-
-    /***********/
-    /** Other **/
-
     @ReactMethod
     /**
-     * Clear data in buffer
+     * Write array of byte values to device, without base64 conversion
      */
-    public void clear(Promise promise) {
-        mBuffer.setLength(0);
-        promise.resolve(true);
+    public void writeBytesTo(String id, ReadableArray bytes, Promise promise) {
+        int length = bytes.size();
+        byte[] buffer = mBytePool.acquire(length);
+        for (int i = 0; i < length; i++) {
+            buffer[i] = (byte) bytes.getInt(i);
+        }
+        writePooled(id, buffer, length, promise);
     }
 
     @ReactMethod
     /**
-     * Get length of data available to read
+     * Send request to last connected device and resolve with its response
      */
-    public void available(Promise promise) {
-        promise.resolve(mBuffer.length());
+    public void transactToDevice(String payload, @Nullable ReadableMap options, Promise promise) {
+        transactWithDevice(mDefaultDevice, payload, options, promise);
     }
 
-
     @ReactMethod
     /**
-     * Set bluetooth adapter name
+     * Send base64 encoded request to device and resolve with response frame,
+     * encoded like read data. Responses are matched to requests in order,
+     * or by id bytes found at idOffset of request and responseIdOffset of
+     * response when idLength is set, so several requests may be pending.
+     * Options: timeout (ms, default 5000), idOffset, idLength, responseIdOffset
+     * and framing. Responses are cut by framing of device unless framing
+     * config differs from it, then received data are decoded with framing of
+     * transaction while it is the oldest pending one. Pending transactions
+     * with equal framing share decoder, so pipelined responses keep its state.
+     * Matched frames are not emitted as read events.
      */
-    public void setAdapterName(String newName, Promise promise) {
-        if (mBluetoothAdapter != null) {
-            mBluetoothAdapter.setName(newName);
+    public void transactWithDevice(String id, String payload, @Nullable ReadableMap options, final Promise promise) {
+        if (!ensureConnected(id, promise)) return;
+
+        final DeviceState state = getDeviceState(id);
+        byte[] data = Base64.decode(payload, Base64.DEFAULT);
+        int timeout = 5000;
+        byte[] requestId = null;
+        int responseIdOffset = 0;
+        FrameDecoder decoder = null;
+
+        if (options != null) {
+            if (options.hasKey("framing") && !options.isNull("framing")) {
+                try {
+                    decoder = state.getTransactionDecoder(options.getMap("framing"));
+                } catch (Exception e) {
+                    promise.reject(e);
+                    return;
+                }
+            }
+
+            timeout = getInt(options, "timeout", timeout);
+            int idLength = getInt(options, "idLength", 0);
+            if (idLength > 0) {
+                int idOffset = getInt(options, "idOffset", 0);
+                if (idOffset + idLength > data.length) {
+                    promise.reject(new IllegalArgumentException("Request id is out of payload"));
+                    return;
+                }
+                requestId = Arrays.copyOfRange(data, idOffset, idOffset + idLength);
+                responseIdOffset = getInt(options, "responseIdOffset", idOffset);
+            }
         }
-        promise.resolve(true);
+
+        // Register before writing, response may come before write completes
+        final TransactionQueue.Transaction transaction = new TransactionQueue.Transaction(promise, requestId, responseIdOffset, decoder);
+        synchronized (state.transactions) {
+            state.transactions.add(transaction);
+            if (timeout > 0) {
+                transaction.timeout = getEmitScheduler().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (state.transactions.remove(transaction)) {
+                            promise.reject(new Exception("Transaction timed out"));
+                        }
+                    }
+                }, timeout, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        mBluetoothService.write(id, data, new WriteQueue.Callback() {
+            @Override
+            public void onComplete() {
+                // Wait for response
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                if (state.transactions.remove(transaction)) {
+                    if (transaction.timeout != null) transaction.timeout.cancel(false);
+                    promise.reject(e);
+                }
+            }
+        });
     }
 
-    /****************************************/
-    /** Methods available to whole package **/
-    /****************************************/
+    @ReactMethod
+    /**
+     * Write string in given charset to last connected device
+     */
+    public void writeText(String text, String charset, Promise promise) {
+        writeTextTo(mDefaultDevice, text, charset, promise);
+    }
 
+    @ReactMethod
     /**
-     * Handle connection success
-     * @param msg Additional message
+     * Write string encoded in given charset to device, it is encoded
+     * straight into pooled write buffer
      */
-    void onConnectionSuccess(String msg) {
-        WritableMap params = Arguments.createMap();
-        params.putString("message", msg);
-        sendEvent(CONN_SUCCESS, null);
-        if (mConnectedPromise != null) {
-            mConnectedPromise.resolve(params);
+    public void writeTextTo(String id, String text, String charset, Promise promise) {
+        byte[] buffer;
+        int length;
+        synchronized (mEncoders) {
+            CharsetEncoder encoder;
+            try {
+                encoder = getEncoder(charset);
+            } catch (IllegalArgumentException e) {
+                promise.reject(e);
+                return;
+            }
+
+            buffer = mBytePool.acquire((int) Math.ceil(text.length() * (double) encoder.maxBytesPerChar()));
+            ByteBuffer out = ByteBuffer.wrap(buffer);
+            encoder.reset();
+            encoder.encode(CharBuffer.wrap(text), out, true);
+            encoder.flush(out);
+            length = out.position();
         }
-        mConnectedPromise = null;
+        writePooled(id, buffer, length, promise);
     }
 
+    @ReactMethod
     /**
-     * handle connection failure
-     * @param msg Additional message
+     * Get state of write queue of last connected device
      */
-    void onConnectionFailed(String msg) {
-        WritableMap params = Arguments.createMap();
-        params.putString("message", msg);
-        sendEvent(CONN_FAILED, null);
-        if (mConnectedPromise != null) {
-            mConnectedPromise.reject(new Exception(msg));
-        }
-        mConnectedPromise = null;
+    public void writeQueueStats(Promise promise) {
+        writeQueueStatsOf(mDefaultDevice, promise);
     }
 
+    @ReactMethod
     /**
-     * Handle lost connection
-     * @param msg Message
+     * Get state of write queue of device
      */
-    void onConnectionLost (String msg) {
-        WritableMap params = Arguments.createMap();
-        params.putString("message", msg);
-        sendEvent(CONN_LOST, params);
+    public void writeQueueStatsOf(String id, Promise promise) {
+        WritableMap stats = Arguments.createMap();
+        stats.putInt("depth", mBluetoothService.getWriteQueueDepth(id));
+        stats.putInt("bytesInFlight", mBluetoothService.getWriteBytesInFlight(id));
+        promise.resolve(stats);
     }
 
+    @ReactMethod
     /**
-     * Handle error
-     * @param e Exception
+     * Get throughput and latency metrics of last connected device
      */
-    void onError (Exception e) {
-        WritableMap params = Arguments.createMap();
-        params.putString("message", e.getMessage());
-        sendEvent(ERROR, params);
+    public void getStats(Promise promise) {
+        getStatsOf(mDefaultDevice, promise);
     }
 
+    @ReactMethod
     /**
-     * Handle read
-     * @param data Message
+     * Get throughput and latency metrics of device, resolves to null
+     * when device was never connected
      */
-    void onData (String data) {
-        mBuffer.append(data);
-        String completeData = readUntil(this.delimiter);
-        if (completeData != null && completeData.length() > 0) {
-            WritableMap params = Arguments.createMap();
-            params.putString("data", completeData);
-            sendEvent(DEVICE_READ, params);
+    public void getStatsOf(String id, Promise promise) {
+        ConnectionStats stats = mBluetoothService.getStats(id);
+        if (stats == null) {
+            promise.resolve(null);
+            return;
         }
-    }
 
-    private String readUntil(String delimiter) {
-        String data = "";
-        int index = mBuffer.indexOf(delimiter, 0);
-        if (index > -1) {
-            data = mBuffer.substring(0, index + delimiter.length());
-            mBuffer.delete(0, index + delimiter.length());
+        WritableMap params = Arguments.createMap();
+        params.putString("id", id);
+        params.putDouble("uptime", stats.uptime());
+        params.putDouble("bytesIn", stats.bytesIn.sum());
+        params.putDouble("bytesOut", stats.bytesOut.sum());
+        params.putDouble("framesIn", stats.framesIn.sum());
+        params.putDouble("framesOut", stats.framesOut.sum());
+        params.putDouble("reconnects", Math.max(stats.connects.sum() - 1, 0));
+        params.putDouble("bufferHighWater", stats.bufferHighWater());
+        params.putInt("bufferSize", mBluetoothService.getReadBufferSize(id));
+        params.putDouble("overflows", stats.overflows.sum());
+        params.putDouble("droppedBytes", stats.droppedBytes.sum());
+        params.putDouble("corruptFrames", stats.corruptFrames.sum());
+        params.putDouble("unmatchedFrames", stats.unmatchedFrames.sum());
+
+        WritableArray readSizes = Arguments.createArray();
+        for (int i = 0; i < stats.readSizes.usedBuckets(); i++) {
+            WritableMap bucket = Arguments.createMap();
+            bucket.putDouble("upTo", Histogram.upperBound(i));
+            bucket.putDouble("count", stats.readSizes.bucketCount(i));
+            readSizes.pushMap(bucket);
         }
-        return data;
+        params.putArray("readSizes", readSizes);
+        params.putMap("writeLatency", latencyToWritableMap(stats.writeLatency));
+        params.putMap("emitLag", latencyToWritableMap(stats.emitLag));
+        promise.resolve(params);
     }
 
-    /*********************/
-    /** Private methods **/
-    /*********************/
+    /**********************/
+    /** Read from device **/
 
+    @ReactMethod
     /**
-     * Check if is api level 19 or above
-     * @return is above api level 19
+     * Read from last connected device over serial port
      */
-    private boolean isKitKatOrAbove () {
-        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+    public void readFromDevice(Promise promise) {
+        readFrom(mDefaultDevice, promise);
     }
 
+    @ReactMethod
     /**
-     * Send event to javascript
-     * @param eventName Name of the event
+     * Read from device over serial port
+     */
+    public void readFrom(String id, Promise promise) {
+        if (D) Log.d(TAG, "Read");
+        promise.resolve(encode(mBluetoothService.read(id)));
+    }
+
+    @ReactMethod
+    /**
+     * Read given number of bytes from last connected device
+     */
+    public void readBytes(int length, int timeout, Promise promise) {
+        readBytesFrom(mDefaultDevice, length, timeout, promise);
+    }
+
+    @ReactMethod
+    /**
+     * Read given number of bytes from device, resolves as soon as they are
+     * received, or with bytes received so far once timeout (ms, 0 for none)
+     * elapses. While the read is pending received bytes wait for it instead
+     * of going to framing. Only one read per device may be pending.
+     */
+    public void readBytesFrom(String id, int length, int timeout, Promise promise) {
+        if (length <= 0) {
+            promise.reject(new IllegalArgumentException("Length must be positive"));
+            return;
+        }
+        if (!ensureConnected(id, promise)) return;
+
+        final DeviceState state = getDeviceState(id);
+        final TimedRead read = new TimedRead(length, promise);
+        synchronized (state) {
+            if (state.timedRead != null) {
+                promise.reject(new IllegalStateException("Read is already pending"));
+                return;
+            }
+            state.timedRead = read;
+            if (timeout > 0) {
+                read.timeout = getEmitScheduler().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (completeTimedRead(state, read)) {
+                            emitReceived(state); // Bytes held for the read go to framing now
+                        }
+                    }
+                }, timeout, TimeUnit.MILLISECONDS);
+            }
+        }
+        completeTimedRead(state, null); // Bytes may be there already
+    }
+
+    @ReactMethod
+    public void readUntilDelimiter(String delimiter, Promise promise) {
+        promise.resolve(readUntil(mDefaultDevice, delimiter));
+    }
+
+    @ReactMethod
+    public void readUntilDelimiterFrom(String id, String delimiter, Promise promise) {
+        promise.resolve(readUntil(id, delimiter));
+    }
+
+    /************************/
+    /** Frame subscriptions **/
+
+    @ReactMethod
+    /**
+     * Emit frames matching filter as event of given name instead of read event,
+     * subscription of the same name is replaced
+     */
+    public void subscribe(String name, ReadableMap filter, Promise promise) {
+        if (RESERVED_EVENTS.contains(name)) {
+            promise.reject(new Exception("Event name " + name + " is reserved"));
+            return;
+        }
+
+        try {
+            Subscription subscription = new Subscription(createFrameFilter(filter),
+                filter.hasKey("schema") && !filter.isNull("schema") ? getSchema(filter.getString("schema")) : null);
+            synchronized (this) {
+                Map<String, Subscription> subscriptions = new LinkedHashMap<>(mSubscriptions);
+                subscriptions.put(name, subscription);
+                mSubscriptions = subscriptions;
+            }
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject(e);
+        }
+    }
+
+    @ReactMethod
+    /**
+     * Remove subscription, its frames go to read event again
+     */
+    public void unsubscribe(String name, Promise promise) {
+        synchronized (this) {
+            Map<String, Subscription> subscriptions = new LinkedHashMap<>(mSubscriptions);
+            subscriptions.remove(name);
+            mSubscriptions = subscriptions.isEmpty() ? Collections.<String, Subscription>emptyMap() : subscriptions;
+        }
+        promise.resolve(true);
+    }
+
+    @ReactMethod
+    /**
+     * Set what happens to frames matching no subscription while there are some:
+     * emit (as read event, default) or drop
+     */
+    public void withUnmatchedFrames(String policy, Promise promise) {
+        if (!policy.equals("emit") && !policy.equals("drop")) {
+            promise.reject(new Exception("Unknown policy " + policy));
+            return;
+        }
+        mDropUnmatched = policy.equals("drop");
+        promise.resolve(true);
+    }
+
+    @ReactMethod
+    /**
+     * Compile binary layout of frames, it can be used by name afterwards
+     */
+    public void registerSchema(String name, ReadableMap config, Promise promise) {
+        try {
+            mSchemas.put(name, createFrameSchema(config));
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject(e);
+        }
+    }
+
+    @ReactMethod
+    /**
+     * Decode frames of all devices which do not have their own schema into
+     * fields of registered schema, null emits them as strings again
+     */
+    public void withFrameSchema(@Nullable String name, Promise promise) {
+        try {
+            mFrameSchema = name != null ? getSchema(name) : null;
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject(e);
+        }
+    }
+
+    @ReactMethod
+    /**
+     * Decode frames of single device into fields of registered schema,
+     * null returns device to common schema
+     */
+    public void withDeviceFrameSchema(String id, @Nullable String name, Promise promise) {
+        try {
+            getDeviceState(id).setSchema(name != null ? getSchema(name) : null);
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject(e);
+        }
+    }
+
+    /*********************/
+    /** Background mode **/
+
+    @ReactMethod
+    /**
+     * Keep connections in foreground service when the app is paused or destroyed,
+     * data received meanwhile are spooled to disk until drained
+     */
+    public void startBackgroundMode(@Nullable ReadableMap config, Promise promise) {
+        Spool spool = getSpool();
+        if (config != null && config.hasKey("spoolSize")) {
+            spool.setMaxBytes(config.getInt("spoolSize"));
+        }
+        BackgroundSession.start(mBluetoothService, spool).attach(this);
+
+        Intent intent = new Intent(mReactContext, RCTBluetoothSerialForegroundService.class);
+        if (config != null && config.hasKey("title")) {
+            intent.putExtra(RCTBluetoothSerialForegroundService.EXTRA_TITLE, config.getString("title"));
+        }
+        if (config != null && config.hasKey("text")) {
+            intent.putExtra(RCTBluetoothSerialForegroundService.EXTRA_TEXT, config.getString("text"));
+        }
+        try {
+            RCTBluetoothSerialForegroundService.start(mReactContext, intent);
+        } catch (Exception e) {
+            BackgroundSession.stop(this);
+            promise.reject(e);
+            return;
+        }
+        promise.resolve(true);
+    }
+
+    @ReactMethod
+    /**
+     * Tie connections to the app lifecycle again, spooled data stay until drained
+     */
+    public void stopBackgroundMode(Promise promise) {
+        BackgroundSession.stop(this);
+        mReactContext.stopService(new Intent(mReactContext, RCTBluetoothSerialForegroundService.class));
+        promise.resolve(true);
+    }
+
+    @ReactMethod
+    /**
+     * Check if background mode is on
+     */
+    public void isBackgroundMode(Promise promise) {
+        promise.resolve(BackgroundSession.get() != null);
+    }
+
+    @ReactMethod
+    /**
+     * Take all data spooled while the app was in background, oldest first
+     */
+    public void drainSpool(Promise promise) {
+        try {
+            WritableArray chunks = Arguments.createArray();
+            for (Spool.Record record : getSpool().drain()) {
+                WritableMap chunk = Arguments.createMap();
+                chunk.putString("id", record.id);
+                chunk.putString("data", encode(record.data));
+                chunk.putDouble("time", record.time);
+                chunks.pushMap(chunk);
+            }
+            promise.resolve(chunks);
+        } catch (IOException e) {
+            promise.reject(e);
+        }
+    }
+
+    /***********************/
+    /** Session recording **/
+
+    @ReactMethod
+    /**
+     * Record everything received and sent by all connections to binary log,
+     * relative path is resolved in app files directory
+     */
+    public void startRecording(String path, Promise promise) {
+        File file = getFile(path);
+        try {
+            mBluetoothService.startRecording(file);
+            promise.resolve(file.getAbsolutePath());
+        } catch (IOException e) {
+            promise.reject(e);
+        }
+    }
+
+    @ReactMethod
+    /**
+     * Stop recording, resolves with path of the log or null when nothing was recorded
+     */
+    public void stopRecording(Promise promise) {
+        try {
+            File file = mBluetoothService.stopRecording();
+            promise.resolve(file != null ? file.getAbsolutePath() : null);
+        } catch (IOException e) {
+            promise.reject(e);
+        }
+    }
+
+    @ReactMethod
+    /**
+     * Play back data received from device in recorded log as connection to it,
+     * speed 1 is real time and 0 as fast as possible
+     */
+    public void replay(String path, final String id, final double speed, Promise promise) {
+        final File file = getFile(path);
+        if (!file.exists()) {
+            promise.reject(new Exception("No such log " + file));
+            return;
+        }
+
+        Promise previous = mConnectedPromises.put(id, promise);
+        if (previous != null) {
+            previous.reject(new Exception("Connection canceled"));
+        }
+        mDefaultDevice = id;
+        mBluetoothService.connect(id, new Transport.Factory() {
+            @Override
+            public Transport create() {
+                return new ReplayTransport(file, id, speed);
+            }
+        });
+    }
+
+    /***********/
+    /** Other **/
+
+    @ReactMethod
+    /**
+     * Clear data in buffer
+     */
+    public void clear(Promise promise) {
+        clearDevice(mDefaultDevice, promise);
+    }
+
+    @ReactMethod
+    /**
+     * Clear data in buffer of device
+     */
+    public void clearDevice(String id, Promise promise) {
+        mBluetoothService.clear(id);
+        promise.resolve(true);
+    }
+
+    @ReactMethod
+    /**
+     * Get length of data available to read
+     */
+    public void available(Promise promise) {
+        availableFrom(mDefaultDevice, promise);
+    }
+
+    @ReactMethod
+    /**
+     * Get length of data available to read from device
+     */
+    public void availableFrom(String id, Promise promise) {
+        promise.resolve(mBluetoothService.available(id));
+    }
+
+
+    @ReactMethod
+    /**
+     * Set bluetooth adapter name
+     */
+    public void setAdapterName(String newName, Promise promise) {
+        if (mBluetoothAdapter != null) {
+            mBluetoothAdapter.setName(newName);
+        }
+        promise.resolve(true);
+    }
+
+    /****************************************/
+    /** Methods available to whole package **/
+    /****************************************/
+
+    /**
+     * Handle connection success
+     * @param id Device id
+     * @param msg Additional message
+     */
+    @Override
+    public void onConnectionSuccess(String id, String msg) {
+        WritableMap params = Arguments.createMap();
+        params.putString("id", id);
+        params.putString("message", msg);
+        sendEvent(CONN_SUCCESS, params);
+        Promise promise = mConnectedPromises.remove(id);
+        if (promise != null) {
+            WritableMap result = Arguments.createMap();
+            result.putString("id", id);
+            result.putString("message", msg);
+            promise.resolve(result);
+        }
+    }
+
+    /**
+     * handle connection failure
+     * @param id Device id
+     * @param msg Additional message
+     */
+    @Override
+    public void onConnectionFailed(String id, String msg) {
+        WritableMap params = Arguments.createMap();
+        params.putString("id", id);
+        params.putString("message", msg);
+        sendEvent(CONN_FAILED, params);
+        Promise promise = mConnectedPromises.remove(id);
+        if (promise != null) {
+            promise.reject(new Exception(msg));
+        }
+    }
+
+    /**
+     * Handle lost connection
+     * @param id Device id
+     * @param msg Message
+     */
+    @Override
+    public void onConnectionLost (String id, String msg) {
+        failPending(id, msg);
+        WritableMap params = Arguments.createMap();
+        params.putString("id", id);
+        params.putString("message", msg);
+        sendEvent(CONN_LOST, params);
+    }
+
+    /**
+     * Handle full read buffer, emitted once every time buffer gets full
+     * @param id Device id
+     */
+    @Override
+    public void onBufferOverflow(String id) {
+        ConnectionStats stats = mBluetoothService.getStats(id);
+        WritableMap params = Arguments.createMap();
+        params.putString("id", id);
+        params.putDouble("overflows", stats != null ? stats.overflows.sum() : 0);
+        params.putDouble("droppedBytes", stats != null ? stats.droppedBytes.sum() : 0);
+        sendEvent(BUFFER_OVERFLOW, params);
+    }
+
+    /**
+     * Handle scheduled reconnect of lost connection
+     * @param id Device id
+     * @param attempt Number of attempt starting at 1
+     * @param delay Milliseconds until attempt
+     */
+    @Override
+    public void onReconnecting(String id, int attempt, long delay) {
+        WritableMap params = Arguments.createMap();
+        params.putString("id", id);
+        params.putInt("attempt", attempt);
+        params.putDouble("delay", delay);
+        sendEvent(CONN_RECONNECTING, params);
+    }
+
+    /**
+     * Handle error
+     * @param e Exception
+     */
+    @Override
+    public void onError (Exception e) {
+        WritableMap params = Arguments.createMap();
+        params.putString("message", e.getMessage());
+        sendEvent(ERROR, params);
+    }
+
+    /**
+     * Handle read, emits every complete message found in the read buffer
+     * @param id Device id
+     */
+    @Override
+    public void onData (String id) {
+        DeviceState state = getDeviceState(id);
+        long gap = state.getIdleGap();
+        if (gap > 0) scheduleIdleCheck(state, gap);
+        emitReceived(state);
+    }
+
+    /**
+     * Emit every complete message of device, or schedule emit of batch
+     * @param state Device read state
+     */
+    private void emitReceived(DeviceState state) {
+        String id = state.id;
+        long received = System.nanoTime();
+        // Timed read takes received bytes before framing
+        if (!completeTimedRead(state, null)) return;
+
+        // Responses to pending transactions are picked up right away, not with next batch
+        if (mBatchInterval > 0 && state.transactions.isEmpty()) {
+            if (state.pendingSince == 0) state.pendingSince = received;
+            scheduleReadBatch(state);
+            return;
+        }
+
+        FrameDecoder deviceDecoder = state.getDecoder();
+        boolean binary = mBinaryMode;
+        Frame frame = state.frame;
+        synchronized (frame) {
+            while (true) {
+                FrameDecoder framing = state.transactions.getDecoder();
+                if (!mBluetoothService.readFrame(id, framing != null ? framing : deviceDecoder, frame)) break;
+                if (completeTransaction(state, frame, framing, binary)) continue;
+                if (routeFrame(state, frame, binary, null, received)) continue;
+
+                WritableMap params = Arguments.createMap();
+                params.putString("id", id);
+                putFrame(params, frame, binary, state.getSchema());
+                sendEvent(binary ? DEVICE_RAW_READ : DEVICE_READ, params);
+                recordEmitLag(state, received);
+                if (EMIT_TRACE.sample()) EMIT_TRACE.log(id, frame.length);
+            }
+        }
+    }
+
+    private String readUntil(String id, String delimiter) {
+        byte[] data = mBluetoothService.readUntil(id, delimiter.getBytes(CHARSET));
+        return data != null ? encode(data) : "";
+    }
+
+    /*********************/
+    /** Private methods **/
+    /*********************/
+
+    /**
+     * Complete pending transaction answered by frame
+     * @param state Device read state
+     * @param frame Received frame
+     * @param framing Transaction framing which cut the frame, null for framing of device
+     * @param binary Whether binary mode is on
+     * @return Whether frame was response and should not be emitted
+     */
+    private boolean completeTransaction(DeviceState state, Frame frame, @Nullable FrameDecoder framing, boolean binary) {
+        if (state.transactions.isEmpty()) return false;
+
+        TransactionQueue.Transaction transaction = state.transactions.match(frame, framing);
+        if (transaction == null) return false;
+
+        transaction.promise.resolve(encodeFrame(frame, binary));
+        return true;
+    }
+
+    /**
+     * Reject all pending transactions and timed read of device
+     */
+    private void failPending(String id, String message) {
+        DeviceState state = mDeviceStates.get(id);
+        if (state == null) return;
+
+        for (TransactionQueue.Transaction transaction : state.transactions.clear()) {
+            transaction.promise.reject(new Exception(message));
+        }
+
+        TimedRead read;
+        synchronized (state) {
+            read = state.timedRead;
+            state.timedRead = null;
+        }
+        if (read != null) {
+            if (read.timeout != null) read.timeout.cancel(false);
+            read.promise.reject(new Exception(message));
+        }
+    }
+
+    /**
+     * Resolve timed read once enough bytes arrived, or with bytes received
+     * so far when it timed out
+     * @param state Device read state
+     * @param timedOut Read whose timeout elapsed, null when called for received data
+     * @return Whether no timed read is pending any more, so framing may take received bytes
+     */
+    private boolean completeTimedRead(DeviceState state, @Nullable TimedRead timedOut) {
+        if (state.timedRead == null) return true;
+
+        TimedRead read;
+        byte[] data;
+        synchronized (state) {
+            read = state.timedRead;
+            if (read == null) return true;
+            if (timedOut != null && read != timedOut) return false;
+            if (timedOut == null && mBluetoothService.available(state.id) < read.length) return false;
+
+            data = mBluetoothService.read(state.id, read.length);
+            state.timedRead = null;
+        }
+
+        if (read.timeout != null) read.timeout.cancel(false);
+        read.promise.resolve(encode(data));
+        return true;
+    }
+
+    /**
+     * Queue write of pooled buffer, buffer goes back to pool once written
+     */
+    private void writePooled(String id, final byte[] buffer, int length, final Promise promise) {
+        mBluetoothService.write(id, buffer, length, new WriteQueue.Callback() {
+            @Override
+            public void onComplete() {
+                mBytePool.release(buffer);
+                promise.resolve(true);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                mBytePool.release(buffer);
+                promise.reject(e);
+            }
+        });
+    }
+
+    /**
+     * Get cached encoder of charset, called with encoders locked
+     * @param charset Charset name
+     * @throws IllegalArgumentException When charset is not supported
+     */
+    private CharsetEncoder getEncoder(String charset) {
+        CharsetEncoder encoder = mEncoders.get(charset);
+        if (encoder == null) {
+            encoder = Charset.forName(charset).newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            mEncoders.put(charset, encoder);
+        }
+        return encoder;
+    }
+
+    /**
+     * Reject promises of all connections which were canceled before they were made
+     */
+    private void rejectConnectPromises() {
+        for (String id : mConnectedPromises.keySet()) {
+            Promise promise = mConnectedPromises.remove(id);
+            if (promise != null) {
+                promise.reject(new Exception("Connection canceled"));
+            }
+        }
+    }
+
+    /**
+     * Create frame decoder from javascript configuration
+     * @param config Configuration with type and its options
+     * @param bufferSize Size of read buffer of the device, frames which stay in it until
+     *                   complete cannot be longer or they would never complete
+     * @return Frame decoder
+     */
+    private FrameDecoder createFrameDecoder(ReadableMap config, int bufferSize) {
+        String type = config.hasKey("type") ? config.getString("type") : "";
+        int maxLength = getInt(config, "maxLength", Math.min(MAX_FRAME_LENGTH, bufferSize));
+
+        switch (type) {
+            case "delimiter":
+                return new DelimiterFrameDecoder(config.getString("delimiter").getBytes(CHARSET));
+            case "fixedLength":
+                int length = config.getInt("length");
+                checkBuffered(length, bufferSize);
+                return new FixedLengthFrameDecoder(length);
+            case "lengthField":
+                checkBuffered(maxLength, bufferSize);
+                return new LengthFieldFrameDecoder(
+                    getInt(config, "offset", 0),
+                    getInt(config, "width", 2),
+                    config.hasKey("littleEndian") && config.getBoolean("littleEndian"),
+                    getInt(config, "adjustment", 0),
+                    maxLength);
+            case "slip":
+                return new SlipFrameDecoder(maxLength);
+            case "cobs":
+                return new CobsFrameDecoder(maxLength);
+            case "idleGap":
+                checkBuffered(maxLength, bufferSize);
+                return new IdleGapFrameDecoder((long) (config.getDouble("gap") * 1000000), maxLength);
+            case "text":
+                String[] delimiters = getDelimiters(config);
+                Charset charset = Charset.forName(config.hasKey("charset") ? config.getString("charset") : "UTF-8");
+                int delimiterLength = 0;
+                for (String delimiter : delimiters) {
+                    delimiterLength = Math.max(delimiterLength, delimiter.getBytes(charset).length);
+                }
+                // Line stays in read buffer until its delimiter arrives
+                int lineLength = getInt(config, "maxLength", Math.min(MAX_FRAME_LENGTH, bufferSize - delimiterLength));
+                checkBuffered(lineLength + delimiterLength, bufferSize);
+                return new TextFrameDecoder(
+                    delimiters,
+                    charset,
+                    lineLength,
+                    !config.hasKey("stripDelimiter") || config.getBoolean("stripDelimiter"),
+                    !config.hasKey("skipEmpty") || config.getBoolean("skipEmpty"));
+            default:
+                throw new IllegalArgumentException("Unknown frame decoder " + type);
+        }
+    }
+
+    /**
+     * Frame which waits in read buffer until it is complete has to fit in it
+     */
+    private static void checkBuffered(int length, int bufferSize) {
+        if (length > bufferSize) {
+            throw new IllegalArgumentException("Frame length " + length
+                + " is larger than read buffer of " + bufferSize + " bytes");
+        }
+    }
+
+    /**
+     * Compile frame schema from javascript configuration
+     * @param config Default byte order and array of field definitions
+     * @return Frame schema
+     */
+    private FrameSchema createFrameSchema(ReadableMap config) {
+        ReadableArray list = config.getArray("fields");
+        FrameSchema.Field[] fields = new FrameSchema.Field[list.size()];
+        for (int i = 0; i < fields.length; i++) {
+            ReadableMap definition = list.getMap(i);
+            FrameSchema.Field field = new FrameSchema.Field(
+                definition.getString("name"),
+                FrameSchema.type(definition.getString("type")),
+                getInt(definition, "offset", 0));
+            field.length = getInt(definition, "length", 0);
+            field.bit = getInt(definition, "bit", 0);
+            field.bits = getInt(definition, "bits", 1);
+            field.scale = getDouble(definition, "scale", 1);
+            if (definition.hasKey("littleEndian") && !definition.isNull("littleEndian")) {
+                field.littleEndian = definition.getBoolean("littleEndian");
+            }
+            fields[i] = field;
+        }
+        return new FrameSchema(fields, config.hasKey("littleEndian") && config.getBoolean("littleEndian"));
+    }
+
+    /**
+     * Get registered schema
+     * @throws IllegalArgumentException When there is no schema of that name
+     */
+    private FrameSchema getSchema(String name) {
+        FrameSchema schema = mSchemas.get(name);
+        if (schema == null) throw new IllegalArgumentException("Unknown schema " + name);
+        return schema;
+    }
+
+    /**
+     * Create frame filter from javascript configuration
+     * @param config Criteria, bytes are given as strings of ISO-8859-1 characters or arrays of numbers
+     * @return Frame filter
+     */
+    private FrameFilter createFrameFilter(ReadableMap config) {
+        String id = config.hasKey("id") && !config.isNull("id") ? config.getString("id") : null;
+        String regex = config.hasKey("regex") && !config.isNull("regex") ? config.getString("regex") : null;
+        return new FrameFilter(
+            id,
+            getBytes(config, "prefix"),
+            getInt(config, "offset", 0),
+            getBytes(config, "mask"),
+            getBytes(config, "value"),
+            regex != null ? Pattern.compile(regex) : null);
+    }
+
+    /**
+     * Get delimiters of text lines, CRLF and LF by default
+     */
+    private String[] getDelimiters(ReadableMap config) {
+        if (config.hasKey("delimiters")) {
+            ReadableArray array = config.getArray("delimiters");
+            String[] delimiters = new String[array.size()];
+            for (int i = 0; i < delimiters.length; i++) {
+                delimiters[i] = array.getString(i);
+            }
+            return delimiters;
+        }
+        if (config.hasKey("delimiter")) {
+            return new String[] { config.getString("delimiter") };
+        }
+        return new String[] { "\r\n", "\n" };
+    }
+
+    /**
+     * Get optional bytes from map, given as string or array of numbers
+     */
+    private byte[] getBytes(ReadableMap map, String key) {
+        if (!map.hasKey(key) || map.isNull(key)) return null;
+
+        if (map.getType(key) == ReadableType.Array) {
+            ReadableArray array = map.getArray(key);
+            byte[] bytes = new byte[array.size()];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) array.getInt(i);
+            }
+            return bytes;
+        }
+        return map.getString(key).getBytes(CHARSET);
+    }
+
+    /**
+     * Describe framing config, so equal configs can be recognized
+     * @return Entries of config sorted by key
+     */
+    private static String framingKey(ReadableMap config) {
+        List<String> entries = new ArrayList<>();
+        ReadableMapKeySetIterator it = config.keySetIterator();
+        while (it.hasNextKey()) {
+            String key = it.nextKey();
+            switch (config.getType(key)) {
+                case Boolean:
+                    entries.add(key + "=" + config.getBoolean(key));
+                    break;
+                case Number:
+                    entries.add(key + "=" + config.getDouble(key));
+                    break;
+                case String:
+                    entries.add(key + "=\"" + config.getString(key) + "\"");
+                    break;
+                case Map:
+                    entries.add(key + "=" + framingKey(config.getMap(key)));
+                    break;
+                case Array:
+                    ReadableArray array = config.getArray(key);
+                    List<String> values = new ArrayList<>();
+                    for (int i = 0; i < array.size(); i++) {
+                        values.add(array.getType(i) == ReadableType.Number ? String.valueOf(array.getDouble(i)) : array.getType(i).name());
+                    }
+                    entries.add(key + "=" + values);
+                    break;
+                default:
+                    break; // Null is the same as missing
+            }
+        }
+        Collections.sort(entries);
+        return entries.toString();
+    }
+
+    /**
+     * Create frame checksum from javascript configuration
+     * @param config Configuration with algorithm, layout and handling of corrupt frames
+     * @return Frame checksum
+     */
+    private FrameChecksum createFrameChecksum(ReadableMap config) {
+        String algorithm = config.hasKey("algorithm") ? config.getString("algorithm") : "";
+        FrameChecksum checksum = algorithm.equals("crc")
+            ? FrameChecksum.crc(
+                getInt(config, "width", 16),
+                (long) getDouble(config, "poly", 0),
+                (long) getDouble(config, "init", 0),
+                config.hasKey("reflected") && config.getBoolean("reflected"),
+                (long) getDouble(config, "xorOut", 0))
+            : FrameChecksum.named(algorithm);
+
+        String onError = config.hasKey("onError") && !config.isNull("onError") ? config.getString("onError") : "drop";
+        if (!onError.equals("drop") && !onError.equals("report")) {
+            throw new IllegalArgumentException("Unknown onError " + onError);
+        }
+
+        return checksum
+            .setLayout(
+                getInt(config, "offset", 0),
+                getInt(config, "trailer", 0),
+                config.hasKey("littleEndian") && config.getBoolean("littleEndian"))
+            .setHandling(
+                !config.hasKey("strip") || config.getBoolean("strip"),
+                onError.equals("report"));
+    }
+
+    /**
+     * Stop all connections, unless background mode keeps them
+     */
+    private void stopOrDetach() {
+        BackgroundSession session = BackgroundSession.get();
+        if (session != null) {
+            session.detach(this);
+        } else {
+            mBluetoothService.stop();
+        }
+    }
+
+    /**
+     * Resolve path relative to app files directory
+     */
+    private File getFile(String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(mReactContext.getFilesDir(), path);
+    }
+
+    /**
+     * Get spool, created on first use. Files of previous process are picked up.
+     */
+    private synchronized Spool getSpool() {
+        if (mSpool == null) {
+            mSpool = new Spool(new File(mReactContext.getFilesDir(), SPOOL_DIRECTORY), SPOOL_SIZE);
+        }
+        return mSpool;
+    }
+
+    /**
+     * Get optional integer from map
+     */
+    private int getInt(ReadableMap map, String key, int defaultValue) {
+        return map.hasKey(key) && !map.isNull(key) ? map.getInt(key) : defaultValue;
+    }
+
+    /**
+     * Get optional number from map
+     */
+    private double getDouble(ReadableMap map, String key, double defaultValue) {
+        return map.hasKey(key) && !map.isNull(key) ? map.getDouble(key) : defaultValue;
+    }
+
+    /**
+     * Reject promise unless device is connected
+     * @param id Device id, null when no device was connected
+     * @return Whether device is connected
+     */
+    private boolean ensureConnected(@Nullable String id, Promise promise) {
+        if (id != null && mBluetoothService.isConnected(id)) return true;
+
+        promise.reject(new Exception(id != null ? "Not connected to " + id : "Not connected"));
+        return false;
+    }
+
+    /**
+     * Get read state of device, created on first use
+     * @param id Device id
+     */
+    private DeviceState getDeviceState(String id) {
+        DeviceState state = mDeviceStates.get(id);
+        if (state == null) {
+            DeviceState created = new DeviceState(id);
+            state = mDeviceStates.putIfAbsent(id, created);
+            if (state == null) state = created;
+        }
+        return state;
+    }
+
+    /**
+     * Schedule emit of read batch at the end of current interval,
+     * or right away when there is enough data for whole batch
+     * @param state Device read state
+     */
+    private synchronized void scheduleReadBatch(DeviceState state) {
+        if (state.flushScheduled) return;
+
+        long delay = mBluetoothService.available(state.id) >= mBatchMaxBytes ? 0 : mBatchInterval;
+        getEmitScheduler().schedule(state.flushTask, delay, TimeUnit.MILLISECONDS);
+        state.flushScheduled = true;
+    }
+
+    /**
+     * Check for end of frame once device stays silent for idle gap. Only one
+     * check per device is pending, bytes received meanwhile do not reschedule
+     * it, the check moves itself on when it finds them.
+     * @param state Device read state
+     * @param delay Delay in nanoseconds
+     */
+    private synchronized void scheduleIdleCheck(DeviceState state, long delay) {
+        if (state.idleCheckScheduled) return;
+
+        getEmitScheduler().schedule(state.idleCheckTask, delay, TimeUnit.NANOSECONDS);
+        state.idleCheckScheduled = true;
+    }
+
+    /**
+     * Emit frame ended by silence or wait for the rest of idle gap,
+     * runs on emit scheduler thread
+     * @param state Device read state
+     */
+    private void checkIdle(DeviceState state) {
+        synchronized (this) {
+            state.idleCheckScheduled = false;
+        }
+
+        long gap = state.getIdleGap();
+        if (gap == 0 || mBluetoothService.available(state.id) == 0) return;
+
+        long remaining = gap - (System.nanoTime() - mBluetoothService.lastReceived(state.id));
+        if (remaining > 0) {
+            scheduleIdleCheck(state, remaining);
+        } else {
+            emitReceived(state);
+        }
+    }
+
+    private synchronized ScheduledExecutorService getEmitScheduler() {
+        if (mEmitScheduler == null) {
+            mEmitScheduler = Executors.newSingleThreadScheduledExecutor();
+        }
+        return mEmitScheduler;
+    }
+
+    /**
+     * Emit all complete messages of device up to byte budget as one event,
+     * runs on emit scheduler thread
+     * @param state Device read state
+     */
+    private void flushReadBatch(DeviceState state) {
+        synchronized (this) {
+            state.flushScheduled = false;
+        }
+
+        // Javascript is behind or gone, leave data in buffer until it processes pending batches
+        if (mPendingBatches.get() >= mBatchMaxPending || !mReactContext.hasActiveCatalystInstance()) return;
+
+        FrameDecoder deviceDecoder = state.getDecoder();
+        boolean binary = mBinaryMode;
+        int maxBytes = mBatchMaxBytes;
+        int bytes = 0;
+        WritableArray messages = null;
+        HashMap<String, WritableArray> channels = null; // Messages of subscriptions
+        Frame frame = state.frame;
+
+        synchronized (frame) {
+            while (bytes < maxBytes) {
+                FrameDecoder framing = state.transactions.getDecoder();
+                if (!mBluetoothService.readFrame(state.id, framing != null ? framing : deviceDecoder, frame)) break;
+                if (completeTransaction(state, frame, framing, binary)) continue;
+                bytes += frame.length;
+
+                if (!mSubscriptions.isEmpty()) {
+                    if (channels == null) channels = new HashMap<>();
+                    if (routeFrame(state, frame, binary, channels, 0)) continue;
+                }
+                if (messages == null) messages = Arguments.createArray();
+                pushFrame(messages, frame, binary, state.getSchema());
+            }
+        }
+
+        boolean emitted = false;
+        if (channels != null) {
+            for (Map.Entry<String, WritableArray> channel : channels.entrySet()) {
+                emitBatch(channel.getKey(), state.id, channel.getValue());
+                emitted = true;
+            }
+        }
+        if (messages != null) {
+            emitBatch(binary ? DEVICE_RAW_READ : DEVICE_READ, state.id, messages);
+            emitted = true;
+        }
+
+        if (emitted) {
+            recordEmitLag(state, state.pendingSince);
+            if (EMIT_TRACE.sample()) EMIT_TRACE.log(state.id, bytes);
+        }
+
+        // Lag of messages left in buffer is counted from the oldest read
+        if (mBluetoothService.available(state.id) == 0) state.pendingSince = 0;
+
+        if (bytes >= maxBytes) {
+            scheduleReadBatch(state); // Budget was used up, there may be more messages waiting
+        }
+    }
+
+    /**
+     * Emit batch of messages and count it as pending until javascript takes it over
+     */
+    private void emitBatch(String event, String id, WritableArray messages) {
+        WritableMap params = Arguments.createMap();
+        params.putString("id", id);
+        params.putArray("data", messages);
+        mPendingBatches.incrementAndGet();
+        sendEvent(event, params);
+        // Events are dispatched on JS queue in order, so this runs once the batch was handed over
+        mReactContext.runOnJSQueueThread(mBatchProcessedTask);
+    }
+
+    /**
+     * Deliver frame to all matching subscriptions
+     * @param state Device read state
+     * @param frame Received frame
+     * @param binary Whether binary mode is on
+     * @param batches Messages of subscriptions by event name, null to emit right away
+     * @param received When frame was received, for emit lag of frames emitted right away
+     * @return Whether frame was delivered or dropped, false when it goes to read event
+     */
+    private boolean routeFrame(DeviceState state, Frame frame, boolean binary,
+                               @Nullable HashMap<String, WritableArray> batches, long received) {
+        Map<String, Subscription> subscriptions = mSubscriptions;
+        if (subscriptions.isEmpty()) return false;
+
+        boolean delivered = false;
+        String data = null; // Encoded once for all subscriptions without schema
+        for (Map.Entry<String, Subscription> entry : subscriptions.entrySet()) {
+            Subscription subscription = entry.getValue();
+            if (!subscription.filter.matches(state.id, frame)) continue;
+            delivered = true;
+
+            WritableMap fields = decodeFields(frame, subscription.schema != null ? subscription.schema : state.getSchema());
+            if (fields == null && data == null) data = encodeFrame(frame, binary);
+
+            if (batches != null) {
+                WritableArray messages = batches.get(entry.getKey());
+                if (messages == null) {
+                    messages = Arguments.createArray();
+                    batches.put(entry.getKey(), messages);
+                }
+                if (fields != null) {
+                    messages.pushMap(fields);
+                } else {
+                    messages.pushString(data);
+                }
+            } else {
+                WritableMap params = Arguments.createMap();
+                params.putString("id", state.id);
+                if (fields != null) {
+                    params.putMap("data", fields);
+                } else {
+                    params.putString("data", data);
+                }
+                sendEvent(entry.getKey(), params);
+            }
+        }
+
+        if (delivered) {
+            if (batches == null) recordEmitLag(state, received);
+            return true;
+        }
+
+        ConnectionStats stats = state.getStats();
+        if (stats != null) stats.unmatchedFrames.increment();
+        return mDropUnmatched;
+    }
+
+    /**
+     * Javascript took over one batch, continue emitting if it was holding data back
+     */
+    private void onReadBatchProcessed() {
+        if (mPendingBatches.decrementAndGet() >= mBatchMaxPending) return;
+
+        for (DeviceState state : mDeviceStates.values()) {
+            if (mBluetoothService.available(state.id) > 0) {
+                scheduleReadBatch(state);
+            }
+        }
+    }
+
+    /**
+     * Record time from receiving data to emitting them
+     * @param state Device read state
+     * @param received Time of read in nanoseconds, 0 if unknown
+     */
+    private void recordEmitLag(DeviceState state, long received) {
+        ConnectionStats stats = state.getStats();
+        if (stats != null && received != 0) {
+            stats.emitLag.record(System.nanoTime() - received);
+        }
+    }
+
+    /**
+     * Convert latency histogram in nanoseconds into map with milliseconds
+     * @param histogram Latency histogram
+     */
+    private WritableMap latencyToWritableMap(Histogram histogram) {
+        long count = histogram.count();
+        WritableMap params = Arguments.createMap();
+        params.putDouble("count", count);
+        params.putDouble("mean", count > 0 ? (double) histogram.sum() / count / 1e6 : 0);
+        params.putDouble("p50", histogram.percentile(50) / 1e6);
+        params.putDouble("p90", histogram.percentile(90) / 1e6);
+        params.putDouble("p99", histogram.percentile(99) / 1e6);
+        params.putDouble("max", histogram.max() / 1e6);
+        return params;
+    }
+
+    /**
+     * Check if is api level 19 or above
+     * @return is above api level 19
+     */
+    private boolean isKitKatOrAbove () {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+    }
+
+    /**
+     * Convert received bytes to string in current read mode
+     * @param data Received bytes
+     * @return Base64 in binary mode, otherwise ISO-8859-1 string
+     */
+    private String encode(byte[] data) {
+        return mBinaryMode ? encodeBase64(data) : new String(data, CHARSET);
+    }
+
+    /**
+     * Convert frame to string passed to javascript, straight from frame bytes
+     * @param frame Decoded frame
+     * @param binary Whether binary mode is on
+     * @return Base64 in binary mode, otherwise text of text decoder or ISO-8859-1 string
+     */
+    private String encodeFrame(Frame frame, boolean binary) {
+        if (binary) return Base64.encodeToString(frame.data, 0, frame.length, Base64.NO_WRAP);
+        return frame.text != null ? frame.text : new String(frame.data, 0, frame.length, CHARSET);
+    }
+
+    /**
+     * Put frame into event as fields when schema is set and frame fits it, otherwise as string
+     */
+    private void putFrame(WritableMap params, Frame frame, boolean binary, @Nullable FrameSchema schema) {
+        WritableMap fields = decodeFields(frame, schema);
+        if (fields != null) {
+            params.putMap("data", fields);
+        } else {
+            params.putString("data", encodeFrame(frame, binary));
+        }
+    }
+
+    /**
+     * Add frame to batch as fields when schema is set and frame fits it, otherwise as string
+     */
+    private void pushFrame(WritableArray messages, Frame frame, boolean binary, @Nullable FrameSchema schema) {
+        WritableMap fields = decodeFields(frame, schema);
+        if (fields != null) {
+            messages.pushMap(fields);
+        } else {
+            messages.pushString(encodeFrame(frame, binary));
+        }
+    }
+
+    /**
+     * Decode frame into map of fields
+     * @return Fields or null without schema or when frame is shorter than schema
+     */
+    private @Nullable WritableMap decodeFields(Frame frame, @Nullable FrameSchema schema) {
+        if (schema == null) return null;
+
+        WritableMap fields = Arguments.createMap();
+        if (schema.decode(frame, new MapSink(fields))) return fields;
+
+        if (D) Log.d(TAG, "Frame of " + frame.length + " bytes is shorter than schema");
+        return null;
+    }
+
+    /**
+     * Encode bytes as base64 without line wrapping
+     * @param data Bytes
+     */
+    private String encodeBase64(byte[] data) {
+        return Base64.encodeToString(data, Base64.NO_WRAP);
+    }
+
+    /**
+     * Send event to javascript
+     * @param eventName Name of the event
      * @param params Additional params
      */
     private void sendEvent(String eventName, @Nullable WritableMap params) {
         if (mReactContext.hasActiveCatalystInstance()) {
-            if (D) Log.d(TAG, "Sending event: " + eventName);
             mReactContext
                 .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
                 .emit(eventName, params);
@@ -526,8 +2188,6 @@ public class RCTBluetoothSerialModule extends ReactContextBaseJavaModule impleme
      * @param device Bluetooth device
      */
     private WritableMap deviceToWritableMap(BluetoothDevice device) {
-        if (D) Log.d(TAG, "device" + device.toString());
-
         WritableMap params = Arguments.createMap();
 
         params.putString("name", device.getName());
@@ -541,6 +2201,80 @@ public class RCTBluetoothSerialModule extends ReactContextBaseJavaModule impleme
         return params;
     }
 
+    /**
+     * Convert registered device into WritableMap, same format as deviceToWritableMap
+     * @param device Registered device
+     */
+    private WritableMap deviceToWritableMap(DeviceRegistry.Device device) {
+        WritableMap params = Arguments.createMap();
+
+        params.putString("name", device.name);
+        params.putString("address", device.address);
+        params.putString("id", device.address);
+
+        if (device.deviceClass != -1) {
+            params.putInt("class", device.deviceClass);
+        }
+
+        return params;
+    }
+
+    private WritableArray bondedDevicesToWritableArray(List<DeviceRegistry.Device> devices) {
+        WritableArray array = Arguments.createArray();
+        for (DeviceRegistry.Device device : devices) {
+            array.pushMap(deviceToWritableMap(device));
+        }
+        return array;
+    }
+
+    /**
+     * Take snapshot of device properties for registry
+     * @param device Bluetooth device
+     */
+    private DeviceRegistry.Device toRegistryDevice(BluetoothDevice device) {
+        BluetoothClass bluetoothClass = device.getBluetoothClass();
+        return new DeviceRegistry.Device(device.getAddress(), device.getName(),
+            bluetoothClass != null ? bluetoothClass.getDeviceClass() : -1);
+    }
+
+    /**
+     * Reload paired devices from adapter and emit what changed. Adapter
+     * reports no devices while bluetooth is off, then registry is kept.
+     */
+    private void syncBondedDevices() {
+        if (mBluetoothAdapter == null || !mBluetoothAdapter.isEnabled()) return;
+
+        List<DeviceRegistry.Device> devices = new ArrayList<>();
+        for (BluetoothDevice device : mBluetoothAdapter.getBondedDevices()) {
+            devices.add(toRegistryDevice(device));
+        }
+
+        List<DeviceRegistry.Device> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        boolean initial = !mBondedDevices.isLoaded();
+        mBondedDevices.sync(devices, added, removed);
+        if (!initial) {
+            emitBondedDevicesChanged(added, removed);
+        }
+    }
+
+    /**
+     * Emit change of paired devices to subscribed javascript
+     */
+    private void emitBondedDevicesChanged(List<DeviceRegistry.Device> added, List<String> removed) {
+        if (!mBondedDevicesSubscribed || (added.isEmpty() && removed.isEmpty())) return;
+
+        WritableArray removedIds = Arguments.createArray();
+        for (String id : removed) {
+            removedIds.pushString(id);
+        }
+
+        WritableMap params = Arguments.createMap();
+        params.putArray("added", bondedDevicesToWritableArray(added));
+        params.putArray("removed", removedIds);
+        sendEvent(BONDED_DEVICES_CHANGED, params);
+    }
+
     /**
      * Pair device before kitkat
      * @param device Device
@@ -633,6 +2367,136 @@ public class RCTBluetoothSerialModule extends ReactContextBaseJavaModule impleme
         mReactContext.registerReceiver(devicePairingReceiver, intentFilter);
     }
 
+    /**
+     * Register receiver which emits discovered devices one by one, replaces
+     * receiver of previous streaming discovery and rejects its promise.
+     * Finished broadcast counts only after started one, the one of canceled
+     * previous discovery may still be on its way.
+     * @param filter Device to stop at
+     * @param promise Resolved with matching device or null at the end of discovery
+     */
+    private synchronized void registerStreamingDiscoveryReceiver(final DiscoveryFilter filter, Promise promise) {
+        endStreamingDiscovery(new Exception("Discovery canceled"));
+
+        IntentFilter intentFilter = new IntentFilter();
+        intentFilter.addAction(BluetoothDevice.ACTION_FOUND);
+        intentFilter.addAction(BluetoothAdapter.ACTION_DISCOVERY_STARTED);
+        intentFilter.addAction(BluetoothAdapter.ACTION_DISCOVERY_FINISHED);
+
+        mStreamingDiscoveryPromise = promise;
+        mStreamingDiscoveryReceiver = new BroadcastReceiver() {
+            private final Set<String> found = new HashSet<>();
+            private boolean started = false;
+            private boolean settled = false;
+
+            public void onReceive(Context context, Intent intent) {
+                String action = intent.getAction();
+
+                if (BluetoothAdapter.ACTION_DISCOVERY_STARTED.equals(action)) {
+                    started = true;
+                } else if (BluetoothDevice.ACTION_FOUND.equals(action)) {
+                    BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+                    if (settled || !found.add(device.getAddress())) return; // Report every device once
+
+                    WritableMap params = deviceToWritableMap(device);
+                    params.putInt("rssi", intent.getShortExtra(BluetoothDevice.EXTRA_RSSI, Short.MIN_VALUE));
+                    sendEvent(DEVICE_DISCOVERED, params);
+
+                    BluetoothClass bluetoothClass = device.getBluetoothClass();
+                    if (filter.matches(device.getAddress(), device.getName(),
+                            bluetoothClass != null ? bluetoothClass.getDeviceClass() : -1,
+                            bluetoothClass != null ? bluetoothClass.getMajorDeviceClass() : -1)) {
+                        if (D) Log.d(TAG, "Discovery matched " + device.getAddress());
+                        settled = true;
+                        mBluetoothAdapter.cancelDiscovery(); // Finished broadcast follows
+                        Promise promise = takeStreamingDiscoveryPromise(this);
+                        if (promise != null) promise.resolve(deviceToWritableMap(device));
+                    }
+                } else if (BluetoothAdapter.ACTION_DISCOVERY_FINISHED.equals(action) && started) {
+                    Promise promise = takeStreamingDiscoveryPromise(this);
+                    if (promise != null) promise.resolve(null);
+                    settled = true;
+
+                    WritableMap params = Arguments.createMap();
+                    params.putInt("count", found.size());
+                    sendEvent(DISCOVERY_FINISHED, params);
+                    unregisterStreamingDiscoveryReceiver(this);
+                }
+            }
+        };
+
+        mReactContext.registerReceiver(mStreamingDiscoveryReceiver, intentFilter);
+    }
+
+    /**
+     * Take promise of streaming discovery to settle it, if receiver is the current one
+     * @return Promise, null when it was already settled
+     */
+    private synchronized Promise takeStreamingDiscoveryPromise(BroadcastReceiver receiver) {
+        if (mStreamingDiscoveryReceiver != receiver) return null;
+
+        Promise promise = mStreamingDiscoveryPromise;
+        mStreamingDiscoveryPromise = null;
+        return promise;
+    }
+
+    /**
+     * Unregister receiver of streaming discovery if it is the current one
+     */
+    private synchronized void unregisterStreamingDiscoveryReceiver(BroadcastReceiver receiver) {
+        if (mStreamingDiscoveryReceiver == receiver) {
+            endStreamingDiscovery(new Exception("Discovery canceled"));
+        }
+    }
+
+    /**
+     * Unregister receiver of streaming discovery
+     * @param reason Rejects promise when discovery did not settle it yet
+     */
+    private synchronized void endStreamingDiscovery(Exception reason) {
+        if (mStreamingDiscoveryPromise != null) {
+            mStreamingDiscoveryPromise.reject(reason);
+            mStreamingDiscoveryPromise = null;
+        }
+        if (mStreamingDiscoveryReceiver == null) return;
+
+        try {
+            mReactContext.unregisterReceiver(mStreamingDiscoveryReceiver);
+        } catch (Exception e) {
+            Log.e(TAG, "Unable to unregister receiver", e);
+        }
+        mStreamingDiscoveryReceiver = null;
+    }
+
+    /**
+     * Create discovery filter from javascript configuration
+     * @param config Filter with optional namePrefix, deviceClasses and addresses
+     */
+    private DiscoveryFilter createDiscoveryFilter(@Nullable ReadableMap config) {
+        String namePrefix = null;
+        Set<Integer> deviceClasses = new HashSet<>();
+        Set<String> addresses = new HashSet<>();
+
+        if (config != null) {
+            if (config.hasKey("namePrefix") && !config.isNull("namePrefix")) {
+                namePrefix = config.getString("namePrefix");
+            }
+            if (config.hasKey("deviceClasses") && !config.isNull("deviceClasses")) {
+                ReadableArray classes = config.getArray("deviceClasses");
+                for (int i = 0; i < classes.size(); i++) {
+                    deviceClasses.add(classes.getInt(i));
+                }
+            }
+            if (config.hasKey("addresses") && !config.isNull("addresses")) {
+                ReadableArray list = config.getArray("addresses");
+                for (int i = 0; i < list.size(); i++) {
+                    addresses.add(list.getString(i));
+                }
+            }
+        }
+        return new DiscoveryFilter(namePrefix, deviceClasses, addresses);
+    }
+
     /**
      * Register receiver for bluetooth device discovery
      */
@@ -695,6 +2559,9 @@ public class RCTBluetoothSerialModule extends ReactContextBaseJavaModule impleme
                         case BluetoothAdapter.STATE_ON:
                             if (D) Log.d(TAG, "Bluetooth was enabled");
                             sendEvent(BT_ENABLED, null);
+                            if (mBondedDevices.isLoaded()) {
+                                syncBondedDevices(); // Bonds may have changed while it was off
+                            }
                             break;
                     }
                 }
@@ -703,4 +2570,247 @@ public class RCTBluetoothSerialModule extends ReactContextBaseJavaModule impleme
 
         mReactContext.registerReceiver(bluetoothStateReceiver, intentFilter);
     }
+
+    /**
+     * Register receiver which keeps registry of paired devices up to date
+     */
+    private void registerBondedDevicesReceiver() {
+        IntentFilter intentFilter = new IntentFilter();
+
+        intentFilter.addAction(BluetoothDevice.ACTION_BOND_STATE_CHANGED);
+        intentFilter.addAction(BluetoothDevice.ACTION_NAME_CHANGED);
+
+        final BroadcastReceiver bondedDevicesReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (!mBondedDevices.isLoaded()) return; // Nothing to update, first list loads it
+
+                BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+                if (device == null) return;
+
+                if (BluetoothDevice.ACTION_NAME_CHANGED.equals(intent.getAction())) {
+                    mBondedDevices.rename(device.getAddress(), intent.getStringExtra(BluetoothDevice.EXTRA_NAME));
+                    return;
+                }
+
+                int state = intent.getIntExtra(BluetoothDevice.EXTRA_BOND_STATE, BluetoothDevice.ERROR);
+                List<DeviceRegistry.Device> added = new ArrayList<>();
+                List<String> removed = new ArrayList<>();
+                if (state == BluetoothDevice.BOND_BONDED) {
+                    DeviceRegistry.Device registered = toRegistryDevice(device);
+                    if (mBondedDevices.put(registered)) added.add(registered);
+                } else if (state == BluetoothDevice.BOND_NONE) {
+                    if (mBondedDevices.remove(device.getAddress())) removed.add(device.getAddress());
+                }
+                emitBondedDevicesChanged(added, removed);
+            }
+        };
+
+        mReactContext.registerReceiver(bondedDevicesReceiver, intentFilter);
+    }
+
+    /**
+     * Read settings and emit state of single device
+     */
+    private class DeviceState implements ChecksumFrameDecoder.Listener {
+        final String id;
+        private FrameDecoder ownDecoder = null;    // Common framing is used when null
+        private String ownFraming = null;          // Config of own framing, null when set by delimiter
+        private FrameDecoder transactionDecoder = null; // Framing of last transaction with own framing
+        private String transactionFraming = null;
+        private FrameDecoder commonDecoder = null; // Own copy of common framing
+        private FrameDecoder commonSource = null;
+        private FrameChecksum ownChecksum = null;  // Common validation is used when null
+        private volatile FrameSchema ownSchema = null; // Common schema is used when null
+        private FrameDecoder checkedDecoder = null; // Framing wrapped by validation
+        private FrameDecoder checkedSource = null;
+        private FrameChecksum checkedChecksum = null;
+        boolean flushScheduled = false;   // Guarded by module
+        boolean idleCheckScheduled = false; // Guarded by module
+        volatile TimedRead timedRead = null; // Changed with this locked
+        volatile long pendingSince = 0;   // Time of oldest read not yet emitted in batch
+        private ConnectionStats stats = null;
+        final Frame frame = new Frame(256); // Reused for every frame of device
+        final TransactionQueue transactions = new TransactionQueue();
+        final Runnable flushTask = new Runnable() {
+            @Override
+            public void run() {
+                flushReadBatch(DeviceState.this);
+            }
+        };
+        final Runnable idleCheckTask = new Runnable() {
+            @Override
+            public void run() {
+                checkIdle(DeviceState.this);
+            }
+        };
+
+        DeviceState(String id) {
+            this.id = id;
+        }
+
+        /**
+         * Get metrics of device, stats object of device never changes once created
+         */
+        synchronized ConnectionStats getStats() {
+            if (stats == null) stats = mBluetoothService.getStats(id);
+            return stats;
+        }
+
+        /**
+         * @param decoder Own framing, null for common framing
+         * @param framing Config of own framing, null when it is not known
+         */
+        synchronized void setDecoder(@Nullable FrameDecoder decoder, @Nullable String framing) {
+            ownDecoder = decoder;
+            ownFraming = framing;
+        }
+
+        /**
+         * Get decoder of transaction framing. Transactions pending with the
+         * same framing share decoder, so it keeps state between responses.
+         * @param config Framing config of transaction
+         * @return Decoder or null when config is the framing of device
+         */
+        synchronized @Nullable FrameDecoder getTransactionDecoder(ReadableMap config) {
+            String framing = framingKey(config);
+            if (framing.equals(ownDecoder != null ? ownFraming : mFraming)) return null;
+
+            if (!framing.equals(transactionFraming) || !transactions.uses(transactionDecoder)) {
+                FrameDecoder decoder = createFrameDecoder(config, mBluetoothService.getReadBufferSize(id));
+                if (decoder instanceof IdleGapFrameDecoder) {
+                    // Idle check follows framing of device only
+                    throw new IllegalArgumentException("Idle gap framing can only be set for device");
+                }
+                FrameChecksum checksum = ownChecksum != null ? ownChecksum : mFrameChecksum;
+                transactionDecoder = checksum != null ? new ChecksumFrameDecoder(decoder, checksum, this) : decoder;
+                transactionFraming = framing;
+            }
+            return transactionDecoder;
+        }
+
+        synchronized void setChecksum(@Nullable FrameChecksum checksum) {
+            ownChecksum = checksum;
+        }
+
+        void setSchema(@Nullable FrameSchema schema) {
+            ownSchema = schema;
+        }
+
+        @Nullable FrameSchema getSchema() {
+            FrameSchema schema = ownSchema;
+            return schema != null ? schema : mFrameSchema;
+        }
+
+        /**
+         * Get idle gap ending frames when device uses idle gap framing
+         * @return Gap in nanoseconds, 0 for other framings
+         */
+        synchronized long getIdleGap() {
+            FrameDecoder decoder = ownDecoder != null ? ownDecoder : mFrameDecoder;
+            return decoder instanceof IdleGapFrameDecoder ? ((IdleGapFrameDecoder) decoder).getGap() : 0;
+        }
+
+        /**
+         * Get decoder of device, stateful decoders must not be shared
+         * between devices, so each gets a copy of common framing.
+         * Framing is wrapped by checksum validation when it is set.
+         */
+        synchronized FrameDecoder getDecoder() {
+            FrameDecoder decoder = ownDecoder;
+            if (decoder == null) {
+                FrameDecoder common = mFrameDecoder;
+                if (common != commonSource) {
+                    commonSource = common;
+                    commonDecoder = common.copy();
+                }
+                decoder = commonDecoder;
+            }
+
+            FrameChecksum checksum = ownChecksum != null ? ownChecksum : mFrameChecksum;
+            if (checksum == null) return decoder;
+
+            if (decoder != checkedSource || checksum != checkedChecksum) {
+                checkedSource = decoder;
+                checkedChecksum = checksum;
+                checkedDecoder = new ChecksumFrameDecoder(decoder, checksum, this);
+            }
+            return checkedDecoder;
+        }
+
+        /**
+         * Count corrupt frame and emit it when validation reports them
+         */
+        @Override
+        public void onCorruptFrame(Frame frame, FrameChecksum checksum) {
+            ConnectionStats stats = getStats();
+            if (stats != null) stats.corruptFrames.increment();
+            if (D) Log.d(TAG, "Corrupt frame of " + frame.length + " bytes from " + id);
+
+            if (checksum.isReported()) {
+                WritableMap params = Arguments.createMap();
+                params.putString("id", id);
+                params.putString("data", encodeFrame(frame, mBinaryMode));
+                sendEvent(CORRUPT_FRAME, params);
+            }
+        }
+    }
+
+    /**
+     * Read of given number of bytes waiting for data
+     */
+    private static final class TimedRead {
+        final int length;
+        final Promise promise;
+        ScheduledFuture<?> timeout = null; // Set before read can be completed
+
+        TimedRead(int length, Promise promise) {
+            this.length = length;
+            this.promise = promise;
+        }
+    }
+
+    /**
+     * Frames delivered to one event
+     */
+    private static final class Subscription {
+        final FrameFilter filter;
+        final FrameSchema schema; // Schema of device is used when null
+
+        Subscription(FrameFilter filter, @Nullable FrameSchema schema) {
+            this.filter = filter;
+            this.schema = schema;
+        }
+    }
+
+    /**
+     * Puts decoded fields into map for javascript
+     */
+    private static final class MapSink implements FrameSchema.Sink {
+        private final WritableMap mMap;
+
+        MapSink(WritableMap map) {
+            mMap = map;
+        }
+
+        @Override
+        public void putInt(String name, int value) {
+            mMap.putInt(name, value);
+        }
+
+        @Override
+        public void putDouble(String name, double value) {
+            mMap.putDouble(name, value);
+        }
+
+        @Override
+        public void putBoolean(String name, boolean value) {
+            mMap.putBoolean(name, value);
+        }
+
+        @Override
+        public void putString(String name, String value) {
+            mMap.putString(name, value);
+        }
+    }
 }
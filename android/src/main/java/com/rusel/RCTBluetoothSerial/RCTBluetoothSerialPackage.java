@@ -13,6 +13,10 @@ import com.facebook.react.bridge.JavaScriptModule;
 public class RCTBluetoothSerialPackage implements ReactPackage {
     static final String TAG = "BluetoothSerial";
 
+    // Lowest android.util.Log priority compiled in, set by the build type, see build.gradle.
+    // Classes derive their debug flags from it, so disabled logging is removed by the compiler.
+    static final int LOG_LEVEL = BuildConfig.LOG_LEVEL;
+
     @Override
     public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
         List<NativeModule> modules = new ArrayList<>();
@@ -1,38 +1,70 @@
 package com.rusel.RCTBluetoothSerial;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.UUID;
-
-import android.bluetooth.BluetoothAdapter;
-import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothSocket;
-import android.util.Log;
-
-import static com.rusel.RCTBluetoothSerial.RCTBluetoothSerialPackage.TAG;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * This class does all the work for setting up and managing Bluetooth
- * connections with other devices. It has a thread that listens for
- * incoming connections, a thread for connecting with a device, and a
- * thread for performing data transmissions when connected.
+ * connections with other devices. It keeps registry of connections
+ * keyed by device address, each connection has its own read buffer
+ * and write queue. Connecting, reading and writing of all connections
+ * runs on one shared thread pool. Connections talk to devices through
+ * Transport, so besides bluetooth they can run over loopback or TCP.
+ * Lost connections may be reconnected automatically with backoff.
+ * Traffic of all connections can be recorded to a log and played back.
  *
  * This code was based on the Android SDK BluetoothChat Sample
  * $ANDROID_SDK/samples/android-17/BluetoothChat
  */
 class RCTBluetoothSerialService {
-    // Debugging
-    private static final boolean D = true;
+    // Default size of receive buffer
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    // How often paused reader checks whether connection was canceled
+    private static final long PAUSE_CHECK_INTERVAL = 250;
 
-    // UUIDs
-    private static final UUID UUID_SPP = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+    /**
+     * What happens to received data when read buffer is full
+     */
+    enum OverflowPolicy {
+        DROP_NEWEST, // Keep buffered data, discard what arrives
+        DROP_OLDEST, // Discard the oldest buffered data to make room
+        PAUSE        // Stop reading socket until there is room, RFCOMM flow control slows down the device
+    }
+
+    // Maximal number of bytes waiting to be written
+    private static final int WRITE_QUEUE_SIZE = 256 * 1024;
 
     // Member fields
-    private BluetoothAdapter mAdapter;
-    private ConnectThread mConnectThread;
-    private ConnectedThread mConnectedThread;
-    private RCTBluetoothSerialModule mModule;
-    private String mState;
+    private final Logger mLog;
+    private final boolean mDebug; // Debug logging is on
+    private final TraceSampler mReadTrace; // Sampled traces of data path
+    private final TraceSampler mWriteTrace;
+    private volatile ConnectionListener mModule;
+    private final Map<String, Connection> mConnections = new HashMap<>();
+    private final Map<String, ConnectionStats> mStats = new HashMap<>(); // Kept after disconnect
+    private ExecutorService mExecutor;           // Created on first use, shut down by stop
+    private ScheduledExecutorService mScheduler; // Created on first use, shut down by stop
+    private volatile ReconnectPolicy mReconnectPolicy; // Null when reconnect is off
+    private volatile long mConnectTimeout = 0; // 0 means no timeout
+    private volatile long mConnectStagger = -1; // Negative means fallback starts after failure
+    private volatile int mReadBufferSize = READ_BUFFER_SIZE;
+    private volatile OverflowPolicy mOverflowPolicy = OverflowPolicy.DROP_NEWEST;
+    private final AtomicReference<SessionRecorder> mRecorder = new AtomicReference<>(); // Null when not recording
 
     // Constants that indicate the current connection state
     private static final String STATE_NONE = "none";       // we're doing nothing
@@ -40,13 +72,18 @@ class RCTBluetoothSerialService {
     private static final String STATE_CONNECTED = "connected";  // now connected to a remote device
 
     /**
-     * Constructor. Prepares a new RCTBluetoothSerialModule session.
+     * Constructor. Prepares a new RCTBluetoothSerialModule session. Service
+     * itself does not depend on Android, bluetooth comes in as transport
+     * factories, see BluetoothTransport.
      * @param module Module which handles service events
+     * @param log Logger, AndroidLogger in the app
      */
-    RCTBluetoothSerialService(RCTBluetoothSerialModule module) {
-        mAdapter = BluetoothAdapter.getDefaultAdapter();
-        mState = STATE_NONE;
+    RCTBluetoothSerialService(ConnectionListener module, Logger log) {
         mModule = module;
+        mLog = log;
+        mDebug = log.isLoggable(Logger.DEBUG);
+        mReadTrace = new TraceSampler("read", log);
+        mWriteTrace = new TraceSampler("write", log);
     }
 
     /********************************************/
@@ -54,288 +91,636 @@ class RCTBluetoothSerialService {
     /********************************************/
 
     /**
-     * Start the ConnectThread to initiate a connection to a remote device.
-     * @param device  The BluetoothDevice to connect
+     * Start connecting over transports of given factory, existing connection
+     * with the same id is closed, other connections are kept.
+     * @param id Id of connection, device address for bluetooth
+     * @param factory Creates link to the device for every attempt
      */
-    synchronized void connect(BluetoothDevice device) {
-        if (D) Log.d(TAG, "connect to: " + device);
+    synchronized void connect(String id, Transport.Factory factory) {
+        if (mDebug) mLog.d("connect to: " + id);
+
+        stop(id); // Cancel any connection to this device
 
-        if (mState.equals(STATE_CONNECTING)) {
-            cancelConnectThread(); // Cancel any thread attempting to make a connection
+        ConnectionStats stats = mStats.get(id);
+        if (stats == null) {
+            stats = new ConnectionStats();
+            mStats.put(id, stats);
         }
+        start(new Connection(id, factory, stats, new RingBuffer(mReadBufferSize), 0));
+    }
+
+    /**
+     * Create transport racing candidates with connect options of service,
+     * the first one which connects is used
+     * @param candidates Transports to the same device, in order of preference
+     * @return Racing transport or the only candidate
+     */
+    Transport race(List<Transport> candidates) {
+        if (candidates.size() == 1) return candidates.get(0);
+        return new RacingTransport(candidates, mConnectStagger, getExecutor(), mLog);
+    }
 
-        cancelConnectedThread(); // Cancel any thread currently running a connection
+    /**
+     * Send events to another listener, connections are kept
+     * @param listener New listener
+     */
+    void setListener(ConnectionListener listener) {
+        mModule = listener;
+    }
 
-        // Start the thread to connect with the given device
-        mConnectThread = new ConnectThread(device);
-        mConnectThread.start();
-        setState(STATE_CONNECTING);
+    /**
+     * Set automatic reconnect of lost connections, applies to connections
+     * lost from now on. Connecting for the first time is never retried.
+     * @param policy Backoff policy or null to turn reconnect off
+     */
+    void setReconnectPolicy(ReconnectPolicy policy) {
+        mReconnectPolicy = policy;
+    }
+
+    /**
+     * Set receive buffer of connections
+     * @param size Buffer size in bytes, applies to connections started from now on
+     * @param policy What to do when buffer is full, applies right away
+     */
+    void setReadBuffer(int size, OverflowPolicy policy) {
+        mReadBufferSize = size;
+        mOverflowPolicy = policy;
+    }
+
+    /**
+     * Set limits of connect pipeline, apply to connections started from now on
+     * @param timeout Milliseconds after which connect attempt is aborted, 0 for no limit
+     * @param stagger Milliseconds after which fallback socket strategy is started
+     *                while previous is still connecting, negative to start it
+     *                only after previous failed, 0 to try all at once
+     */
+    void setConnectOptions(long timeout, long stagger) {
+        mConnectTimeout = timeout;
+        mConnectStagger = stagger;
+    }
+
+    /**
+     * Start recording traffic of all connections, including the open ones.
+     * Recording which is already running is stopped.
+     * @param file Log file, overwritten
+     * @throws IOException When file cannot be created or previous recording failed
+     */
+    void startRecording(File file) throws IOException {
+        SessionRecorder previous = mRecorder.getAndSet(new SessionRecorder(file));
+        if (previous != null) previous.close();
+    }
+
+    /**
+     * Stop recording and write the rest of the log
+     * @return Log file or null when not recording
+     * @throws IOException When writing of log failed
+     */
+    File stopRecording() throws IOException {
+        SessionRecorder recorder = mRecorder.getAndSet(null);
+        if (recorder == null) return null;
+
+        recorder.close();
+        return recorder.getFile();
+    }
+
+    /**
+     * Check whether service is connected to any device
+     * @return Is connected to device
+     */
+    synchronized boolean isConnected () {
+        for (Connection connection : mConnections.values()) {
+            if (connection.isConnected()) return true;
+        }
+        return false;
     }
 
     /**
      * Check whether service is connected to device
+     * @param id Device address
      * @return Is connected to device
      */
-    boolean isConnected () {
-        return getState().equals(STATE_CONNECTED);
+    boolean isConnected (String id) {
+        Connection connection = getConnection(id);
+        return connection != null && connection.isConnected();
     }
 
     /**
-     * Write to the ConnectedThread in an unsynchronized manner
+     * Get addresses of all connected devices
+     * @return List of device addresses
+     */
+    synchronized List<String> getConnectedDevices() {
+        List<String> ids = new ArrayList<>();
+        for (Connection connection : mConnections.values()) {
+            if (connection.isConnected()) ids.add(connection.mmId);
+        }
+        return ids;
+    }
+
+    /**
+     * Queue write to the connection
+     * @param id Device address
      * @param out The bytes to write
-     * @see ConnectedThread#write(byte[])
+     * @param callback Called once bytes were written or write failed
      */
-    void write(byte[] out) {
-        if (D) Log.d(TAG, "Write in service, state is " + STATE_CONNECTED);
-        ConnectedThread r; // Create temporary object
+    void write(String id, byte[] out, WriteQueue.Callback callback) {
+        write(id, out, out.length, callback);
+    }
 
-        // Synchronize a copy of the ConnectedThread
-        synchronized (this) {
-            if (!isConnected()) return;
-            r = mConnectedThread;
+    /**
+     * Queue write of the beginning of array, array must not change until callback
+     * @param id Device address
+     * @param out The bytes to write
+     * @param length Number of bytes to write
+     * @param callback Called once bytes were written or write failed
+     */
+    void write(String id, byte[] out, int length, WriteQueue.Callback callback) {
+        Connection connection = getConnection(id);
+
+        if (connection == null || !connection.isConnected()) {
+            callback.onFailure(new Exception("Not connected"));
+            return;
         }
 
-        r.write(out); // Perform the write unsynchronized
+        connection.write(out, length, callback);
     }
 
     /**
-     * Stop all threads
+     * Get number of writes waiting to be sent
+     * @param id Device address
+     * @return Number of writes
      */
-    synchronized void stop() {
-        if (D) Log.d(TAG, "stop");
-
-        cancelConnectThread();
-        cancelConnectedThread();
+    int getWriteQueueDepth(String id) {
+        Connection connection = getConnection(id);
+        return connection != null ? connection.mmWriteQueue.depth() : 0;
+    }
 
-        setState(STATE_NONE);
+    /**
+     * Get number of bytes waiting to be sent or being sent
+     * @param id Device address
+     * @return Number of bytes
+     */
+    int getWriteBytesInFlight(String id) {
+        Connection connection = getConnection(id);
+        return connection != null ? connection.mmWriteQueue.bytesInFlight() : 0;
     }
 
-    /*********************/
-    /** Private methods **/
-    /*********************/
+    /**
+     * Read and remove all data received from device
+     * @param id Device address
+     * @return Received bytes
+     */
+    byte[] read(String id) {
+        Connection connection = getConnection(id);
+        return connection != null ? connection.mmBuffer.read() : new byte[0];
+    }
 
     /**
-     * Return the current connection state.
+     * Read and remove up to length bytes received from device
+     * @param id Device address
+     * @param length Maximal number of bytes
+     * @return Received bytes
      */
-    private synchronized String getState() {
-        return mState;
+    byte[] read(String id, int length) {
+        Connection connection = getConnection(id);
+        return connection != null ? connection.mmBuffer.read(length) : new byte[0];
     }
 
     /**
-     * Set the current state of connection
-     * @param state  An integer defining the current connection state
+     * Read and remove received data up to and including delimiter
+     * @param id Device address
+     * @param delimiter Delimiter bytes
+     * @return Received bytes or null when delimiter was not received yet
      */
-    private synchronized void setState(String state) {
-        if (D) Log.d(TAG, "setState() " + mState + " -> " + state);
-        mState = state;
+    byte[] readUntil(String id, byte[] delimiter) {
+        Connection connection = getConnection(id);
+        return connection != null ? connection.mmBuffer.readUntil(delimiter) : null;
     }
 
     /**
-     * Start the ConnectedThread to begin managing a Bluetooth connection
-     * @param socket  The BluetoothSocket on which the connection was made
-     * @param device  The BluetoothDevice that has been connected
+     * Read and remove next complete frame
+     * @param id Device address
+     * @param decoder Frame decoder of the device
+     * @param frame Frame to decode into
+     * @return Whether complete frame was decoded
      */
-    private synchronized void connectionSuccess(BluetoothSocket socket, BluetoothDevice device) {
-        if (D) Log.d(TAG, "connected");
+    boolean readFrame(String id, FrameDecoder decoder, Frame frame) {
+        Connection connection = getConnection(id);
+        if (connection == null || !connection.mmBuffer.readFrame(decoder, frame)) return false;
 
-        cancelConnectThread(); // Cancel any thread attempting to make a connection
-        cancelConnectedThread(); // Cancel any thread currently running a connection
+        connection.mmStats.framesIn.increment();
+        return true;
+    }
 
-        // Start the thread to manage the connection and perform transmissions
-        mConnectedThread = new ConnectedThread(socket);
-        mConnectedThread.start();
+    /**
+     * Get number of bytes available to read
+     * @param id Device address
+     * @return Number of bytes
+     */
+    int available(String id) {
+        Connection connection = getConnection(id);
+        return connection != null ? connection.mmBuffer.size() : 0;
+    }
 
-        mModule.onConnectionSuccess("Connected to " + device.getName());
-        setState(STATE_CONNECTED);
+    /**
+     * Get time when data were last received from device
+     * @param id Device address
+     * @return System.nanoTime of last read, 0 when device is not connected or sent nothing yet
+     */
+    long lastReceived(String id) {
+        Connection connection = getConnection(id);
+        return connection != null ? connection.mmBuffer.lastWrite() : 0;
     }
 
+    /**
+     * Drop all received data
+     * @param id Device address
+     */
+    void clear(String id) {
+        Connection connection = getConnection(id);
+        if (connection != null) connection.mmBuffer.clear();
+    }
 
     /**
-     * Indicate that the connection attempt failed and notify the UI Activity.
+     * Get metrics of device, they are kept across reconnects and after disconnect
+     * @param id Device address
+     * @return Stats or null when device was never connected
      */
-    private void connectionFailed() {
-        mModule.onConnectionFailed("Unable to connect to device"); // Send a failure message
-        RCTBluetoothSerialService.this.stop(); // Start the service over to restart listening mode
+    synchronized ConnectionStats getStats(String id) {
+        return id != null ? mStats.get(id) : null;
     }
 
     /**
-     * Indicate that the connection was lost and notify the UI Activity.
+     * Get capacity of read buffer
+     * @param id Device address
+     * @return Number of bytes
      */
-    private void connectionLost() {
-        mModule.onConnectionLost("Device connection was lost");  // Send a failure message
-        RCTBluetoothSerialService.this.stop(); // Start the service over to restart listening mode
+    int getReadBufferSize(String id) {
+        Connection connection = getConnection(id);
+        return connection != null ? connection.mmBuffer.capacity() : mReadBufferSize;
     }
 
     /**
-     * Cancel connect thread
+     * Close connection to device
+     * @param id Device address
      */
-    private void cancelConnectThread () {
-        if (mConnectThread != null) {
-            mConnectThread.cancel();
-            mConnectThread = null;
+    synchronized void stop(String id) {
+        Connection connection = mConnections.remove(id);
+        if (connection != null) {
+            if (mDebug) mLog.d("stop " + id);
+            connection.cancel();
         }
     }
 
     /**
-     * Cancel connected thread
+     * Close all connections and shut down their threads, they are created
+     * again by the next connect
      */
-    private void cancelConnectedThread () {
-        if (mConnectedThread != null) {
-            mConnectedThread.cancel();
-            mConnectedThread = null;
+    synchronized void stop() {
+        if (mDebug) mLog.d("stop");
+
+        for (Connection connection : mConnections.values()) {
+            connection.cancel();
+        }
+        mConnections.clear();
+
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+            mExecutor = null;
+        }
+        if (mScheduler != null) {
+            mScheduler.shutdownNow();
+            mScheduler = null;
         }
     }
 
+    /*********************/
+    /** Private methods **/
+    /*********************/
+
     /**
-     * This thread runs while attempting to make an outgoing connection
-     * with a device. It runs straight through; the connection either
-     * succeeds or fails.
+     * Register and start connection
      */
-    private class ConnectThread extends Thread {
-        private BluetoothSocket mmSocket;
-        private final BluetoothDevice mmDevice;
+    private synchronized void start(Connection connection) {
+        connection.mmStats.connects.increment();
+        mConnections.put(connection.mmId, connection);
+        connection.start();
+    }
 
-        ConnectThread(BluetoothDevice device) {
-            mmDevice = device;
-            BluetoothSocket tmp = null;
+    /**
+     * Schedule new attempt to connect instead of lost or failed connection.
+     * Lost connection stays registered until then, so its data are still
+     * readable, and new connection continues with the same read buffer.
+     * @return False when reconnect is off, connection was stopped or attempts ran out
+     */
+    private boolean scheduleReconnect(final Connection previous) {
+        ReconnectPolicy policy = mReconnectPolicy;
+        final int attempt = previous.mmAttempt + 1;
+        if (policy == null || !policy.allows(attempt)) return false;
 
-            // Get a BluetoothSocket for a connection with the given BluetoothDevice
-            try {
-                tmp = device.createRfcommSocketToServiceRecord(UUID_SPP);
-            } catch (Exception e) {
-                mModule.onError(e);
-                Log.e(TAG, "Socket create() failed", e);
-            }
-            mmSocket = tmp;
+        long delay = policy.getDelay(attempt);
+        synchronized (this) {
+            if (mConnections.get(previous.mmId) != previous) return false;
+
+            previous.mmReconnect = getScheduler().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    reconnect(previous, attempt);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
         }
 
-        public void run() {
-            if (D) Log.d(TAG, "BEGIN mConnectThread");
-            setName("ConnectThread");
+        if (mDebug) mLog.d("reconnect " + previous.mmId + " attempt " + attempt + " in " + delay + " ms");
+        mModule.onReconnecting(previous.mmId, attempt, delay);
+        return true;
+    }
 
-            // Always cancel discovery because it will slow down a connection
-            mAdapter.cancelDiscovery();
+    private synchronized void reconnect(Connection previous, int attempt) {
+        if (mConnections.get(previous.mmId) != previous) return; // Stopped or replaced meanwhile
+        start(new Connection(previous.mmId, previous.mmFactory, previous.mmStats, previous.mmBuffer, attempt));
+    }
 
-            // Make a connection to the BluetoothSocket
-            try {
-                // This is a blocking call and will only return on a successful connection or an exception
-                if (D) Log.d(TAG,"Connecting to socket...");
-                mmSocket.connect();
-                if (D) Log.d(TAG,"Connected");
-            } catch (Exception e) {
-                Log.e(TAG, e.toString());
-                mModule.onError(e);
+    private synchronized ExecutorService getExecutor() {
+        if (mExecutor == null) {
+            mExecutor = Executors.newCachedThreadPool();
+        }
+        return mExecutor;
+    }
 
-                // Some 4.1 devices have problems, try an alternative way to connect
-                // See https://github.com/don/RCTBluetoothSerialModule/issues/89
-                try {
-                    Log.i(TAG,"Trying fallback...");
-                    mmSocket = (BluetoothSocket) mmDevice.getClass().getMethod("createRfcommSocket", new Class[] {int.class}).invoke(mmDevice,1);
-                    mmSocket.connect();
-                    Log.i(TAG,"Connected");
-                } catch (Exception e2) {
-                    Log.e(TAG, "Couldn't establish a Bluetooth connection.");
-                    mModule.onError(e2);
-                    try {
-                        mmSocket.close();
-                    } catch (Exception e3) {
-                        Log.e(TAG, "unable to close() socket during connection failure", e3);
-                        mModule.onError(e3);
-                    }
-                    connectionFailed();
-                    return;
+    private synchronized ScheduledExecutorService getScheduler() {
+        if (mScheduler == null) {
+            mScheduler = Executors.newSingleThreadScheduledExecutor();
+        }
+        return mScheduler;
+    }
+
+    /**
+     * Get connection by device address. Connection which was lost stays
+     * registered until it is stopped or replaced, so data received before
+     * the loss stay readable.
+     */
+    private synchronized Connection getConnection(String id) {
+        return id != null ? mConnections.get(id) : null;
+    }
+
+    /**
+     * Indicate that the connection attempt failed and notify the UI Activity.
+     */
+    private void connectionFailed(Connection connection) {
+        if (connection.mmAttempt > 0) {
+            // Failed reconnect, try again or give up and keep it registered like lost connection
+            if (!scheduleReconnect(connection)) {
+                mModule.onConnectionFailed(connection.mmId, "Unable to reconnect to device");
+            }
+            return;
+        }
+
+        mModule.onConnectionFailed(connection.mmId, "Unable to connect to device"); // Send a failure message
+        synchronized (this) {
+            if (mConnections.get(connection.mmId) == connection) {
+                mConnections.remove(connection.mmId);
+            }
+        }
+    }
+
+    /**
+     * Indicate that the connection was lost and notify the UI Activity.
+     */
+    private void connectionLost(Connection connection) {
+        mModule.onConnectionLost(connection.mmId, "Device connection was lost");  // Send a failure message
+        scheduleReconnect(connection);
+    }
+
+    /**
+     * Single connection with remote device. It connects on shared executor
+     * and the same pooled thread then keeps reading while connected, writes
+     * are drained on the executor only while there is something to send.
+     */
+    private class Connection {
+        private final String mmId;
+        private final Transport.Factory mmFactory;
+        private final Transport mmTransport;
+        private final ConnectionStats mmStats;
+        private final RingBuffer mmBuffer;
+        private final WriteQueue mmWriteQueue;
+        private final int mmAttempt; // Number of reconnect attempt, 0 when connecting first time
+        private volatile Future<?> mmReconnect; // Pending reconnect replacing this connection
+        private final AtomicBoolean mmConnectSettled = new AtomicBoolean(); // Connect finished or timed out
+        private volatile boolean mmTimedOut = false;
+
+        private final Runnable mmTimeoutTask = new Runnable() {
+            @Override
+            public void run() {
+                if (mmConnectSettled.compareAndSet(false, true)) {
+                    mLog.w("connect to " + mmId + " timed out");
+                    mmTimedOut = true;
+                    closeSocket(); // Aborts blocking connect
+                }
+            }
+        };
+        private volatile String mmState = STATE_NONE;
+        private volatile boolean mmCanceled = false;
+        private InputStream mmInStream;
+        private OutputStream mmOutStream;
+
+        private final Runnable mmConnectTask = new Runnable() {
+            @Override
+            public void run() {
+                if (connectSocket()) {
+                    readLoop();
                 }
             }
+        };
 
-            // Reset the ConnectThread because we're done
-            synchronized (RCTBluetoothSerialService.this) {
-                mConnectThread = null;
+        private final Runnable mmWriteTask = new Runnable() {
+            @Override
+            public void run() {
+                drainWrites();
             }
+        };
+
+        Connection(String id, Transport.Factory factory, ConnectionStats stats, RingBuffer buffer, int attempt) {
+            mmId = id;
+            mmFactory = factory;
+            mmTransport = factory.create();
+            mmStats = stats;
+            mmBuffer = buffer;
+            mmWriteQueue = new WriteQueue(WRITE_QUEUE_SIZE, stats);
+            mmAttempt = attempt;
+        }
 
-            connectionSuccess(mmSocket, mmDevice);  // Start the connected thread
+        boolean isConnected() {
+            return mmState.equals(STATE_CONNECTED);
+        }
 
+        void start() {
+            setState(STATE_CONNECTING);
+            getExecutor().execute(mmConnectTask);
         }
 
-        void cancel() {
-            try {
-                mmSocket.close();
-            } catch (Exception e) {
-                Log.e(TAG, "close() of connect socket failed", e);
-                mModule.onError(e);
+        /**
+         * Queue write to the connected OutStream, it is performed on the executor.
+         * @param buffer  The bytes to write
+         * @param length Number of bytes to write
+         * @param callback Called once bytes were written or write failed
+         */
+        void write(byte[] buffer, int length, WriteQueue.Callback callback) {
+            if (mmWriteQueue.offer(buffer, length, callback)) {
+                try {
+                    getExecutor().execute(mmWriteTask);
+                } catch (RejectedExecutionException e) {
+                    // Service was stopped meanwhile, closing of write queue failed the write
+                }
             }
         }
-    }
 
-    /**
-     * This thread runs during a connection with a remote device.
-     * It handles all incoming and outgoing transmissions.
-     */
-    private class ConnectedThread extends Thread {
-        private final BluetoothSocket mmSocket;
-        private final InputStream mmInStream;
-        private final OutputStream mmOutStream;
+        void cancel() {
+            Future<?> reconnect = mmReconnect;
+            if (reconnect != null) reconnect.cancel(false);
+            mmCanceled = true;
+            setState(STATE_NONE);
+            mmWriteQueue.close(new Exception("Connection closed"));
+            closeSocket();
+        }
+
+        /**
+         * Set the current state of connection
+         * @param state  State of connection
+         */
+        private void setState(String state) {
+            if (mDebug) mLog.d("setState() " + mmId + " " + mmState + " -> " + state);
+            mmState = state;
+        }
+
+        /**
+         * Make a connection, it runs straight through; the connection
+         * either succeeds or fails.
+         * @return Whether connection succeeded
+         */
+        private boolean connectSocket() {
+            if (mDebug) mLog.d("BEGIN connect " + mmId);
 
-        ConnectedThread(BluetoothSocket socket) {
-            if (D) Log.d(TAG, "create ConnectedThread");
-            mmSocket = socket;
-            InputStream tmpIn = null;
-            OutputStream tmpOut = null;
+            long timeout = mConnectTimeout;
+            Future<?> timer = timeout > 0
+                ? getScheduler().schedule(mmTimeoutTask, timeout, TimeUnit.MILLISECONDS)
+                : null;
 
-            // Get the BluetoothSocket input and output streams
             try {
-                tmpIn = socket.getInputStream();
-                tmpOut = socket.getOutputStream();
+                // This is a blocking call and will only return on a successful connection or an exception
+                mmTransport.connect();
+                if (!mmConnectSettled.compareAndSet(false, true)) {
+                    throw new IOException("Transport closed"); // Timed out right after connecting
+                }
+                mmInStream = SessionRecorder.tap(mmTransport.getInputStream(), mmId, mRecorder);
+                mmOutStream = SessionRecorder.tap(mmTransport.getOutputStream(), mmId, mRecorder);
             } catch (Exception e) {
-                Log.e(TAG, "temp sockets not created", e);
-                mModule.onError(e);
+                mmConnectSettled.set(true);
+                closeSocket();
+                if (!mmCanceled) {
+                    mModule.onError(mmTimedOut ? new IOException("Connection timed out") : e);
+                    connectionFailed(this);
+                }
+                return false;
+            } finally {
+                if (timer != null) timer.cancel(false);
+            }
+
+            if (mmCanceled) {
+                closeSocket();
+                return false;
             }
 
-            mmInStream = tmpIn;
-            mmOutStream = tmpOut;
+            setState(STATE_CONNECTED);
+            mModule.onConnectionSuccess(mmId, "Connected to " + mmTransport.getName());
+            return true;
         }
 
-        public void run() {
-            Log.i(TAG, "BEGIN mConnectedThread");
-            byte[] buffer = new byte[1024];
+        /**
+         * Keep listening to the InputStream while connected
+         */
+        private void readLoop() {
+            mLog.i("BEGIN read " + mmId);
+            byte[] overflow = null;
+            boolean overflowing = false;
             int bytes;
 
-            // Keep listening to the InputStream while connected
             while (true) {
                 try {
-                    bytes = mmInStream.read(buffer); // Read from the InputStream
-                    String data = new String(buffer, 0, bytes, "ISO-8859-1");
+                    bytes = mmBuffer.readFrom(mmInStream); // Read from the InputStream straight into buffer
+
+                    if (bytes == 0) {
+                        // Buffer is full
+                        OverflowPolicy policy = mOverflowPolicy;
+                        if (!overflowing) {
+                            overflowing = true;
+                            mLog.w("Read buffer of " + mmId + " is full, " + policy);
+                            mmStats.overflows.increment();
+                            mModule.onBufferOverflow(mmId);
+                        }
+
+                        if (policy == OverflowPolicy.PAUSE) {
+                            mmBuffer.awaitSpace(PAUSE_CHECK_INTERVAL);
+                            if (mmCanceled) break;
+                            continue;
+                        }
+
+                        // Keep the socket drained
+                        if (overflow == null) overflow = new byte[1024];
+                        bytes = mmInStream.read(overflow);
+                        if (bytes > 0) {
+                            if (policy != OverflowPolicy.DROP_OLDEST) {
+                                mmStats.droppedBytes.add(bytes);
+                                continue; // Nothing new to pick up
+                            }
+                            // Old bytes were counted when read, only new ones which got stored count now
+                            int skipped = mmBuffer.skip(bytes);
+                            int stored = mmBuffer.write(overflow, 0, bytes);
+                            mmStats.droppedBytes.add(skipped + bytes - stored);
+                            bytes = stored;
+                        }
+                    } else {
+                        overflowing = false;
+                    }
+
+                    if (bytes < 0) {
+                        throw new IOException("Input stream was closed");
+                    }
 
-                    mModule.onData(data); // Send the new data String to the UI Activity
+                    mmStats.recordRead(bytes, mmBuffer.size());
+                    if (mReadTrace.sample()) mReadTrace.log(mmId, bytes);
+
+                    mModule.onData(mmId); // Let the module pick up complete data
                 } catch (Exception e) {
-                    Log.e(TAG, "disconnected", e);
-                    mModule.onError(e);
-                    connectionLost();
-                    RCTBluetoothSerialService.this.stop(); // Start the service over to restart listening mode
+                    if (!mmCanceled) {
+                        mLog.e("disconnected", e);
+                        mModule.onError(e);
+                        cancel();
+                        connectionLost(this);
+                    }
                     break;
                 }
             }
         }
 
         /**
-         * Write to the connected OutStream.
-         * @param buffer  The bytes to write
+         * Write queued data to the connected OutStream until queue is empty
          */
-        void write(byte[] buffer) {
+        private void drainWrites() {
             try {
-                String str = new String(buffer, "UTF-8");
-                if (D) Log.d(TAG, "Write in thread " + str);
-                mmOutStream.write(buffer);
+                while (mmWriteQueue.drainTo(mmOutStream)) {
+                    if (mWriteTrace.sample()) mWriteTrace.log(mmId, mmWriteQueue.lastBatchSize());
+                }
             } catch (Exception e) {
-                Log.e(TAG, "Exception during write", e);
+                // Reader notices broken socket and handles connection loss
+                mLog.e("Exception during write", e);
                 mModule.onError(e);
             }
         }
 
-        void cancel() {
+        private void closeSocket() {
             try {
-                mmSocket.close();
+                mmTransport.close();
             } catch (Exception e) {
-                Log.e(TAG, "close() of connect socket failed", e);
+                mLog.e("close() of connect socket failed", e);
             }
         }
     }
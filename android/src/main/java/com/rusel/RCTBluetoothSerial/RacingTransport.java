@@ -0,0 +1,158 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Transport which connects several candidate transports to the same device
+ * and keeps the first one which succeeds, the others are closed. Candidates
+ * are started in order, next one when all started ones failed or, with
+ * stagger set, also when stagger elapsed while previous is still connecting.
+ * Stagger 0 starts all at once. Closing aborts all pending candidates.
+ */
+final class RacingTransport implements Transport {
+    private final List<Transport> mCandidates;
+    private final long mStagger;
+    private final Executor mExecutor;
+    private final Logger mLog;
+
+    // Guarded by this
+    private Transport mWinner = null;
+    private IOException mFailure = null;
+    private int mStarted = 0;
+    private int mFailed = 0;
+    private boolean mClosed = false;
+
+    /**
+     * @param candidates Transports to race, in order of preference
+     * @param stagger Milliseconds before starting next candidate while previous
+     *                is still connecting, negative to start it only after failure
+     * @param executor Runs connects of candidates
+     * @param log Logger of failures
+     */
+    RacingTransport(List<Transport> candidates, long stagger, Executor executor, Logger log) {
+        mCandidates = candidates;
+        mStagger = stagger;
+        mExecutor = executor;
+        mLog = log;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        int count = mCandidates.size();
+        if (count == 1) {
+            // Nothing to race, connect on calling thread
+            connect(mCandidates.get(0));
+            synchronized (this) {
+                if (mFailure != null) throw mFailure;
+                if (mClosed) throw new IOException("Transport closed");
+                return;
+            }
+        }
+
+        synchronized (this) {
+            long nextStart = 0;
+            while (true) {
+                if (mClosed) throw new IOException("Transport closed");
+                if (mWinner != null) return;
+                if (mFailed == count) throw mFailure;
+
+                long now = System.currentTimeMillis();
+                if (mStarted < count && (mFailed == mStarted || (mStagger >= 0 && now >= nextStart))) {
+                    final Transport candidate = mCandidates.get(mStarted++);
+                    mExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            connect(candidate);
+                        }
+                    });
+                    nextStart = now + mStagger;
+                    continue;
+                }
+
+                try {
+                    wait(mStarted < count && mStagger >= 0 ? nextStart - now : 0);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized InputStream getInputStream() throws IOException {
+        if (mWinner == null) throw new IOException("Not connected");
+        return mWinner.getInputStream();
+    }
+
+    @Override
+    public synchronized OutputStream getOutputStream() throws IOException {
+        if (mWinner == null) throw new IOException("Not connected");
+        return mWinner.getOutputStream();
+    }
+
+    @Override
+    public synchronized String getName() {
+        return (mWinner != null ? mWinner : mCandidates.get(0)).getName();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            mClosed = true;
+            notifyAll();
+        }
+        closeAll(null);
+    }
+
+    /**
+     * Connect one candidate and report result, runs on executor
+     */
+    private void connect(Transport candidate) {
+        IOException failure = null;
+        try {
+            candidate.connect();
+        } catch (IOException e) {
+            failure = e;
+        } catch (Exception e) {
+            failure = new IOException(e.toString());
+        }
+
+        boolean won = false;
+        synchronized (this) {
+            if (failure != null) {
+                mFailed++;
+                mFailure = failure;
+            } else if (mWinner == null && !mClosed) {
+                mWinner = candidate;
+                won = true;
+            }
+            notifyAll();
+        }
+
+        if (won) {
+            closeAll(candidate); // Abort the losers
+        } else if (failure == null) {
+            closeQuietly(candidate); // Connected too late
+        }
+    }
+
+    private void closeAll(Transport except) {
+        for (Transport candidate : mCandidates) {
+            if (candidate != except) closeQuietly(candidate);
+        }
+    }
+
+    private void closeQuietly(Transport transport) {
+        try {
+            transport.close();
+        } catch (Exception e) {
+            mLog.e("close() of candidate transport failed", e);
+        }
+    }
+}
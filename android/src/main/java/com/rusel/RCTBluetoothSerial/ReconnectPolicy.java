@@ -0,0 +1,50 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with jitter for reconnecting lost connections.
+ * Delay of n-th attempt is initialDelay * multiplier^(n-1), capped by
+ * maxDelay and then randomly shortened by up to jitter fraction, so
+ * devices lost at the same time do not retry in lockstep.
+ */
+final class ReconnectPolicy {
+    private final long mInitialDelay;
+    private final long mMaxDelay;
+    private final double mMultiplier;
+    private final double mJitter;
+    private final int mMaxAttempts;
+    private final Random mRandom = new Random();
+
+    /**
+     * @param initialDelay Delay before first attempt in milliseconds
+     * @param maxDelay Maximal delay in milliseconds
+     * @param multiplier Growth of delay with every attempt, at least 1
+     * @param jitter Fraction of delay which is randomized, between 0 and 1
+     * @param maxAttempts Number of attempts before giving up, 0 for unlimited
+     */
+    ReconnectPolicy(long initialDelay, long maxDelay, double multiplier, double jitter, int maxAttempts) {
+        mInitialDelay = Math.max(initialDelay, 0);
+        mMaxDelay = Math.max(maxDelay, mInitialDelay);
+        mMultiplier = Math.max(multiplier, 1);
+        mJitter = Math.min(Math.max(jitter, 0), 1);
+        mMaxAttempts = maxAttempts;
+    }
+
+    /**
+     * @param attempt Attempt number starting at 1
+     * @return Whether attempt should be made
+     */
+    boolean allows(int attempt) {
+        return mMaxAttempts <= 0 || attempt <= mMaxAttempts;
+    }
+
+    /**
+     * @param attempt Attempt number starting at 1
+     * @return Delay before attempt in milliseconds
+     */
+    long getDelay(int attempt) {
+        double delay = Math.min(mInitialDelay * Math.pow(mMultiplier, attempt - 1), mMaxDelay);
+        return (long) (delay * (1 - mJitter * mRandom.nextDouble()));
+    }
+}
@@ -0,0 +1,147 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * Transport which plays back log recorded by SessionRecorder. Received
+ * chunks of the device come in the same sizes and with the same gaps as
+ * recorded, scaled by speed, so they go through the whole framing and event
+ * pipeline like live data. Data written to it are discarded. At the end of
+ * log the input stream ends, which looks like lost connection.
+ */
+class ReplayTransport implements Transport {
+    private final File mFile;
+    private final String mId;
+    private final double mSpeed;
+    private final InputStream mInput = new ReplayInputStream();
+    private final OutputStream mOutput = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    // Guarded by this
+    private SessionLogReader mReader;
+    private long mStartNanos;
+    private int mOffset = 0; // Position in current chunk
+    private int mRemaining = 0; // Bytes of current chunk not read yet
+    private boolean mClosed = false;
+
+    /**
+     * @param file Log file
+     * @param id Device whose received chunks are played, null for chunks of all devices
+     * @param speed Playback speed, 1 is real time, 0 plays as fast as possible
+     */
+    ReplayTransport(File file, String id, double speed) {
+        mFile = file;
+        mId = id;
+        mSpeed = speed;
+    }
+
+    @Override
+    public synchronized void connect() throws IOException {
+        if (mClosed) throw new IOException("Transport closed");
+        mReader = new SessionLogReader(mFile);
+        mStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return mInput;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return mOutput;
+    }
+
+    @Override
+    public String getName() {
+        return "replay of " + mFile.getName();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mClosed = true;
+        notifyAll();
+        if (mReader != null) mReader.close();
+    }
+
+    /**
+     * Take part of current chunk, moving to next chunk once it is due
+     */
+    private synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+
+        if (mRemaining == 0) {
+            if (!nextChunk()) return -1;
+            awaitChunk();
+        }
+
+        int n = Math.min(len, mRemaining);
+        System.arraycopy(mReader.getData(), mOffset, b, off, n);
+        mOffset += n;
+        mRemaining -= n;
+        return n;
+    }
+
+    private boolean nextChunk() throws IOException {
+        if (mClosed) throw new IOException("Transport closed");
+
+        while (mReader.next()) {
+            if (mReader.isInbound() && (mId == null || mId.equals(mReader.getId()))) {
+                mOffset = 0;
+                mRemaining = mReader.getLength();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Wait until current chunk is due, close aborts it
+     */
+    private void awaitChunk() throws IOException {
+        if (mSpeed <= 0) return;
+
+        long due = mStartNanos + (long) (mReader.getNanos() / mSpeed);
+        long wait;
+        while (!mClosed && (wait = due - System.nanoTime()) > 0) {
+            try {
+                wait(wait / 1000000, (int) (wait % 1000000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        if (mClosed) throw new IOException("Transport closed");
+    }
+
+    private class ReplayInputStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return ReplayTransport.this.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            synchronized (ReplayTransport.this) {
+                return mRemaining;
+            }
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+
+/**
+ * Fixed capacity single-producer/single-consumer byte ring buffer.
+ *
+ * The connected thread is the only producer and never takes a lock, it
+ * publishes new bytes by advancing the volatile tail. Consumer side methods
+ * (reads, delimiter scans and clear) may be called from the module thread
+ * as well as from the connected thread, so they are serialized between
+ * themselves, but never block the producer.
+ *
+ * Positions are kept as ever growing longs and masked into the array, so
+ * head == tail means empty and tail - head == capacity means full.
+ */
+final class RingBuffer {
+    private final byte[] mData;
+    private final int mMask;
+
+    private volatile long mHead; // Next byte to be read, written only by consumer
+    private volatile long mTail; // Next byte to be written, written only by producer
+    private volatile long mLastWrite = 0; // System.nanoTime of last write, set before tail moves
+    private volatile long mIdleGap = 0;   // Silence which starts new burst, bursts are not tracked when 0
+    private volatile long mBurstStart = 0; // Position of first byte written after idle gap, set before tail moves
+
+    // Incremental delimiter scan state, consumer only
+    private byte[] mScanDelimiter;
+    private long mScanFrom;
+
+    private boolean mSpaceWaiter = false; // Producer waits for space, guarded by this
+
+    /**
+     * Create ring buffer
+     * @param capacity Minimal capacity, rounded up to power of two
+     */
+    RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        mData = new byte[size];
+        mMask = size - 1;
+    }
+
+    /**
+     * @return Total capacity in bytes
+     */
+    int capacity() {
+        return mData.length;
+    }
+
+    /**
+     * @return Number of bytes available to read
+     */
+    int size() {
+        return (int) (mTail - mHead);
+    }
+
+    /**
+     * @return Number of bytes consumed since buffer was created
+     */
+    long position() {
+        return mHead;
+    }
+
+    /**
+     * Time of last write. Written before bytes are published, so it is at
+     * least as recent as any byte seen by consumer.
+     * @return System.nanoTime of last write, 0 before first write
+     */
+    long lastWrite() {
+        return mLastWrite;
+    }
+
+    /**
+     * Set silence after which write starts new burst, so consumer can tell
+     * where the previous one ended even when next one already started
+     * @param gap Idle gap in nanoseconds, 0 to stop tracking bursts
+     */
+    void setIdleGap(long gap) {
+        mIdleGap = gap;
+    }
+
+    long idleGap() {
+        return mIdleGap;
+    }
+
+    /**
+     * Start of the last burst, read after lastWrite it is at least as recent
+     * @return Position of first byte written after idle gap
+     */
+    long burstStart() {
+        return mBurstStart;
+    }
+
+    /************************/
+    /** Producer side only **/
+
+    /**
+     * @return Number of bytes which can be written without overwriting unread data
+     */
+    int remaining() {
+        return mData.length - (int) (mTail - mHead);
+    }
+
+    /**
+     * Copy bytes into buffer
+     * @param src Source array
+     * @param off Offset in source array
+     * @param len Number of bytes to copy
+     * @return Number of bytes written, may be less than len if buffer is full
+     */
+    int write(byte[] src, int off, int len) {
+        long tail = mTail;
+        int n = Math.min(len, mData.length - (int) (tail - mHead));
+        if (n <= 0) return 0;
+
+        int offset = (int) tail & mMask;
+        int first = Math.min(n, mData.length - offset);
+        System.arraycopy(src, off, mData, offset, first);
+        System.arraycopy(src, off + first, mData, 0, n - first);
+        markWrite(tail);
+        mTail = tail + n;
+        return n;
+    }
+
+    /**
+     * Read from stream straight into the free part of the buffer, without
+     * intermediate copy. Blocks as long as the stream does.
+     * @param in Input stream
+     * @return Number of bytes read, 0 if buffer is full or -1 at the end of stream
+     * @throws IOException When reading from stream fails
+     */
+    int readFrom(InputStream in) throws IOException {
+        long tail = mTail;
+        int free = mData.length - (int) (tail - mHead);
+        if (free == 0) return 0;
+
+        int offset = (int) tail & mMask;
+        int n = in.read(mData, offset, Math.min(free, mData.length - offset));
+        if (n > 0) {
+            markWrite(tail);
+            mTail = tail + n;
+        }
+        return n;
+    }
+
+    /**
+     * Note time of write, it starts new burst when it comes after idle gap
+     * @param tail Position of first written byte
+     */
+    private void markWrite(long tail) {
+        long now = System.nanoTime();
+        long gap = mIdleGap;
+        if (gap > 0 && now - mLastWrite >= gap) mBurstStart = tail;
+        mLastWrite = now;
+    }
+
+    /**
+     * Block while buffer is full, until consumer frees some space or timeout elapses
+     * @param timeout Maximal wait in milliseconds
+     * @throws IOException When waiting thread was interrupted
+     */
+    synchronized void awaitSpace(long timeout) throws IOException {
+        if (remaining() > 0) return;
+
+        mSpaceWaiter = true;
+        try {
+            wait(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } finally {
+            mSpaceWaiter = false;
+        }
+    }
+
+    /************************/
+    /** Consumer side only **/
+
+    /**
+     * Read and remove all buffered bytes
+     * @return Buffered bytes, never null
+     */
+    synchronized byte[] read() {
+        return read(size());
+    }
+
+    /**
+     * Read and remove up to len bytes
+     * @param len Maximal number of bytes
+     * @return Read bytes, never null
+     */
+    synchronized byte[] read(int len) {
+        long head = mHead;
+        int n = Math.min(len, (int) (mTail - head));
+        byte[] out = new byte[Math.max(n, 0)];
+        copy(head, out, 0, out.length);
+        advance(head + out.length);
+        return out;
+    }
+
+    /**
+     * Read and remove up to len bytes into array
+     * @param dst Destination array
+     * @param off Offset in destination array
+     * @param len Maximal number of bytes
+     * @return Number of bytes read
+     */
+    synchronized int read(byte[] dst, int off, int len) {
+        long head = mHead;
+        int n = Math.max(Math.min(len, (int) (mTail - head)), 0);
+        copy(head, dst, off, n);
+        advance(head + n);
+        return n;
+    }
+
+    /**
+     * Read and remove all bytes up to and including the first occurrence of delimiter
+     * @param delimiter Delimiter bytes
+     * @return Frame including delimiter or null when there is no complete frame
+     */
+    synchronized byte[] readUntil(byte[] delimiter) {
+        int length = indexOf(delimiter);
+        return length < 0 ? null : read(length);
+    }
+
+    /**
+     * Take next complete frame out of buffer using frame decoder. Buffer is
+     * locked for the whole decode, so decoder sees consistent consumer state.
+     * @param decoder Frame decoder
+     * @param frame Frame to decode into
+     * @return Whether complete frame was decoded
+     */
+    synchronized boolean readFrame(FrameDecoder decoder, Frame frame) {
+        return decoder.decode(this, frame);
+    }
+
+    /**
+     * Read and remove len bytes into reusable frame
+     * @param len Number of bytes, at most size
+     * @param frame Frame to read into
+     */
+    synchronized void read(int len, Frame frame) {
+        long head = mHead;
+        copy(head, frame.ensureCapacity(len), 0, len);
+        frame.length = len;
+        frame.text = null;
+        advance(head + len);
+    }
+
+    /**
+     * Get byte without consuming it
+     * @param offset Offset from the first unread byte, must be less than size
+     * @return Byte
+     */
+    synchronized byte peek(int offset) {
+        return mData[(int) (mHead + offset) & mMask];
+    }
+
+    /**
+     * Copy bytes without consuming them
+     * @param dst Destination array
+     * @param off Offset in destination array
+     * @param from Offset from the first unread byte
+     * @param len Maximal number of bytes
+     * @return Number of bytes copied
+     */
+    synchronized int peek(byte[] dst, int off, int from, int len) {
+        int n = Math.max(Math.min(len, size() - from), 0);
+        copy(mHead + from, dst, off, n);
+        return n;
+    }
+
+    /**
+     * Drop bytes from the beginning. Producer may call it too, to make
+     * room for new data by dropping the oldest.
+     * @param len Number of bytes, at most size
+     * @return Number of bytes dropped
+     */
+    synchronized int skip(int len) {
+        int n = Math.min(len, size());
+        advance(mHead + n);
+        return n;
+    }
+
+    /**
+     * Find the first occurrence of delimiter. Bytes already checked by
+     * previous call with the same delimiter are not scanned again, so
+     * feeding a long frame in small chunks stays linear.
+     * @param delimiter Delimiter bytes
+     * @return Length of data up to and including delimiter or -1 if not found
+     */
+    synchronized int indexOf(byte[] delimiter) {
+        int dlen = delimiter.length;
+        if (dlen == 0) return -1;
+
+        long head = mHead;
+        long tail = mTail;
+
+        if (delimiter != mScanDelimiter && !Arrays.equals(delimiter, mScanDelimiter)) {
+            mScanDelimiter = delimiter;
+            mScanFrom = head;
+        }
+
+        long from = Math.max(head, mScanFrom);
+        int candidates = (int) (tail - dlen - from + 1); // Positions where delimiter may start
+        if (candidates > 0) {
+            // Scan for first byte in at most two contiguous segments of the array
+            int start = (int) from & mMask;
+            int firstSegment = Math.min(candidates, mData.length - start);
+            int found = scan(start, start + firstSegment, delimiter);
+            if (found < 0 && firstSegment < candidates) {
+                found = scan(0, candidates - firstSegment, delimiter);
+                if (found >= 0) found += mData.length;
+            }
+
+            if (found >= 0) {
+                long p = from + (found - start);
+                mScanFrom = p;
+                return (int) (p - head) + dlen;
+            }
+            from += candidates;
+        }
+
+        mScanFrom = from;
+        return -1;
+    }
+
+    /**
+     * Drop all buffered bytes
+     */
+    synchronized void clear() {
+        advance(mTail);
+    }
+
+    /**
+     * Move head and wake up producer waiting for space, called with lock held
+     */
+    private void advance(long head) {
+        mHead = head;
+        if (mSpaceWaiter) notifyAll();
+    }
+
+    /**
+     * Find start of delimiter between array indexes, delimiter may wrap around
+     * @return Index of delimiter start or -1
+     */
+    private int scan(int from, int to, byte[] delimiter) {
+        byte[] data = mData;
+        byte first = delimiter[0];
+        for (int i = from; i < to; i++) {
+            if (data[i] != first) continue;
+
+            int j = 1;
+            while (j < delimiter.length && data[(i + j) & mMask] == delimiter[j]) j++;
+            if (j == delimiter.length) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Copy bytes out of buffer without consuming them
+     */
+    private void copy(long from, byte[] dst, int off, int len) {
+        int offset = (int) from & mMask;
+        int first = Math.min(len, mData.length - offset);
+        System.arraycopy(mData, offset, dst, off, first);
+        System.arraycopy(mData, 0, dst, off + first, len - first);
+    }
+}
@@ -0,0 +1,187 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sequential reader of logs written by SessionRecorder. Chunks are read
+ * one by one into reused array, file is read through channel in large
+ * blocks. Log cut short by process death ends at its last complete chunk.
+ */
+final class SessionLogReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final List<String> mIds = new ArrayList<>();
+    private final long mStartTime;
+    private boolean mEof = false;
+
+    // Current chunk
+    private int mType;
+    private String mId;
+    private long mNanos = 0;
+    private byte[] mData = new byte[1024];
+    private int mLength;
+
+    /**
+     * Open log and read its header
+     * @param file Log file
+     * @throws IOException When file cannot be read or it is not a session log
+     */
+    SessionLogReader(File file) throws IOException {
+        mChannel = new FileInputStream(file).getChannel();
+        mBuffer.flip();
+
+        try {
+            if (!fill(SessionRecorder.MAGIC.length + 1 + 8)) {
+                throw new IOException("Not a session log: " + file);
+            }
+            for (byte b : SessionRecorder.MAGIC) {
+                if (mBuffer.get() != b) throw new IOException("Not a session log: " + file);
+            }
+            int version = mBuffer.get();
+            if (version != SessionRecorder.VERSION) {
+                throw new IOException("Unsupported session log version " + version);
+            }
+            mStartTime = mBuffer.getLong();
+        } catch (IOException e) {
+            mChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Epoch milliseconds when recording started
+     */
+    long getStartTime() {
+        return mStartTime;
+    }
+
+    /**
+     * Move to next chunk
+     * @return False at the end of log
+     * @throws IOException When reading fails
+     */
+    boolean next() throws IOException {
+        while (fill(1)) {
+            int type = mBuffer.get();
+            try {
+                if (type == SessionRecorder.TYPE_ID) {
+                    int index = (int) readVarint();
+                    byte[] name = new byte[(int) readVarint()];
+                    readFully(name, name.length);
+                    while (mIds.size() <= index) mIds.add(null);
+                    mIds.set(index, new String(name, SessionRecorder.UTF8));
+                    continue;
+                }
+                if (type != SessionRecorder.TYPE_IN && type != SessionRecorder.TYPE_OUT) {
+                    throw new IOException("Corrupted session log, record type " + type);
+                }
+
+                int index = (int) readVarint();
+                long delta = readVarint();
+                int length = (int) readVarint();
+                if (index >= mIds.size() || length < 0) {
+                    throw new IOException("Corrupted session log");
+                }
+                if (mData.length < length) {
+                    mData = new byte[Math.max(length, mData.length * 2)];
+                }
+                readFully(mData, length);
+
+                mType = type;
+                mId = mIds.get(index);
+                mNanos += delta;
+                mLength = length;
+                return true;
+            } catch (EOFException e) {
+                return false; // Last record was cut short
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether current chunk was received from device, otherwise it was sent
+     */
+    boolean isInbound() {
+        return mType == SessionRecorder.TYPE_IN;
+    }
+
+    /**
+     * @return Device id of current chunk
+     */
+    String getId() {
+        return mId;
+    }
+
+    /**
+     * @return Nanoseconds from start of recording to current chunk
+     */
+    long getNanos() {
+        return mNanos;
+    }
+
+    /**
+     * @return Data of current chunk, valid up to length until next call
+     */
+    byte[] getData() {
+        return mData;
+    }
+
+    /**
+     * @return Length of current chunk
+     */
+    int getLength() {
+        return mLength;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+
+    /**
+     * Make sure at least n bytes are buffered, n must fit the buffer
+     * @return False when log ends before
+     */
+    private boolean fill(int n) throws IOException {
+        if (mBuffer.remaining() >= n) return true;
+
+        mBuffer.compact();
+        while (!mEof && mBuffer.position() < n) {
+            if (mChannel.read(mBuffer) < 0) mEof = true;
+        }
+        mBuffer.flip();
+        return mBuffer.remaining() >= n;
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!fill(1)) throw new EOFException();
+            byte b = mBuffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Corrupted session log, varint too long");
+    }
+
+    private void readFully(byte[] dst, int length) throws IOException {
+        int off = 0;
+        while (off < length) {
+            if (!fill(1)) throw new EOFException();
+            int n = Math.min(length - off, mBuffer.remaining());
+            mBuffer.get(dst, off, n);
+            off += n;
+        }
+    }
+}
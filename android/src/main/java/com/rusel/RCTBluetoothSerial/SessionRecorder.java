@@ -0,0 +1,218 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Records every chunk received from and sent to devices into append-only
+ * binary log, which can be played back with ReplayTransport. Records are
+ * collected in a buffer and written to file channel when it fills up or
+ * when recording stops. Failure of the log never breaks the connection,
+ * recording just stops and the failure is kept for whoever stops it.
+ *
+ * Log starts with header: magic "BTSL", version (byte), start time in
+ * epoch milliseconds (long). Then records follow, each starts with type
+ * (byte) and all numbers are unsigned varints:
+ * - ID: index, length, UTF-8 bytes, defines device id before its first chunk
+ * - IN / OUT: id index, nanoseconds since previous record, length, data
+ */
+final class SessionRecorder {
+    static final byte[] MAGIC = {'B', 'T', 'S', 'L'};
+    static final int VERSION = 1;
+
+    static final int TYPE_ID = 0;
+    static final int TYPE_IN = 1;
+    static final int TYPE_OUT = 2;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER = 1 + 3 * 10; // Type and three varints
+
+    private final File mFile;
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final Map<String, Integer> mIds = new HashMap<>();
+    private long mLastNanos = System.nanoTime();
+    private boolean mClosed = false;
+    private IOException mFailure; // First write failure, recording stopped with it
+
+    /**
+     * Start recording, existing file is overwritten
+     * @param file Log file
+     * @throws IOException When file cannot be created
+     */
+    SessionRecorder(File file) throws IOException {
+        mFile = file;
+        mChannel = new FileOutputStream(file, false).getChannel();
+        mBuffer.put(MAGIC).put((byte) VERSION).putLong(System.currentTimeMillis());
+    }
+
+    /**
+     * @return Log file
+     */
+    File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Record chunk received from device
+     */
+    void recordIn(String id, byte[] data, int off, int len) {
+        record(TYPE_IN, id, data, off, len);
+    }
+
+    /**
+     * Record chunk sent to device
+     */
+    void recordOut(String id, byte[] data, int off, int len) {
+        record(TYPE_OUT, id, data, off, len);
+    }
+
+    /**
+     * Write buffered records to file
+     * @throws IOException When writing fails
+     */
+    synchronized void flush() throws IOException {
+        if (mClosed) return;
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+    }
+
+    /**
+     * Flush and close log, later records are ignored
+     * @throws IOException When writing fails now or failed while recording
+     */
+    synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            mClosed = true;
+            mChannel.close();
+        }
+        if (mFailure != null) throw mFailure;
+    }
+
+    private synchronized void record(int type, String id, byte[] data, int off, int len) {
+        if (mClosed || len <= 0) return;
+
+        try {
+            append(type, id, data, off, len);
+        } catch (IOException e) {
+            mFailure = e;
+            mClosed = true;
+            try {
+                mChannel.close();
+            } catch (IOException ignored) {
+                // Already failed
+            }
+        }
+    }
+
+    private void append(int type, String id, byte[] data, int off, int len) throws IOException {
+        Integer index = mIds.get(id);
+        if (index == null) {
+            index = mIds.size();
+            mIds.put(id, index);
+            byte[] name = id.getBytes(UTF8);
+            ensureSpace(MAX_HEADER + name.length);
+            mBuffer.put((byte) TYPE_ID);
+            putVarint(index);
+            putVarint(name.length);
+            mBuffer.put(name);
+        }
+
+        long now = System.nanoTime();
+        ensureSpace(MAX_HEADER);
+        mBuffer.put((byte) type);
+        putVarint(index);
+        putVarint(now - mLastNanos);
+        putVarint(len);
+        mLastNanos = now;
+
+        if (len <= mBuffer.remaining()) {
+            mBuffer.put(data, off, len);
+        } else {
+            // Large chunk goes to channel directly, without copying into buffer
+            flush();
+            ByteBuffer chunk = ByteBuffer.wrap(data, off, len);
+            while (chunk.hasRemaining()) {
+                mChannel.write(chunk);
+            }
+        }
+    }
+
+    private void ensureSpace(int bytes) throws IOException {
+        if (mBuffer.remaining() < bytes) flush();
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            mBuffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        mBuffer.put((byte) value);
+    }
+
+    /**
+     * Wrap stream received from device, chunks are recorded while recorder is set
+     * @param in Input stream of transport
+     * @param id Device id
+     * @param recorder Current recorder, null value when not recording
+     */
+    static InputStream tap(InputStream in, final String id, final AtomicReference<SessionRecorder> recorder) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                SessionRecorder r = recorder.get();
+                if (r != null && n > 0) r.recordIn(id, b, off, n);
+                return n;
+            }
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                SessionRecorder r = recorder.get();
+                if (r != null && b >= 0) r.recordIn(id, new byte[] {(byte) b}, 0, 1);
+                return b;
+            }
+        };
+    }
+
+    /**
+     * Wrap stream sent to device, chunks are recorded while recorder is set
+     * @param out Output stream of transport
+     * @param id Device id
+     * @param recorder Current recorder, null value when not recording
+     */
+    static OutputStream tap(OutputStream out, final String id, final AtomicReference<SessionRecorder> recorder) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len); // Not super, it writes byte by byte
+                SessionRecorder r = recorder.get();
+                if (r != null) r.recordOut(id, b, off, len);
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+        };
+    }
+}
@@ -0,0 +1,78 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.Arrays;
+
+/**
+ * SLIP (RFC 1055) frames. Escapes are decoded, END bytes are not part of
+ * the frame and empty frames are skipped. Bytes are consumed from buffer
+ * as they are decoded, partial frame is kept in decoder.
+ */
+final class SlipFrameDecoder implements FrameDecoder {
+    private static final byte END = (byte) 0xC0;
+    private static final byte ESC = (byte) 0xDB;
+    private static final byte ESC_END = (byte) 0xDC;
+    private static final byte ESC_ESC = (byte) 0xDD;
+
+    private final int mMaxLength;
+    private byte[] mFrame = new byte[64];
+    private int mLength = 0;
+    private boolean mEscaped = false;
+    private boolean mOverflow = false;
+
+    /**
+     * @param maxLength Maximal length of decoded frame, longer frames are dropped
+     */
+    SlipFrameDecoder(int maxLength) {
+        mMaxLength = maxLength;
+    }
+
+    @Override
+    public boolean decode(RingBuffer buffer, Frame frame) {
+        int size = buffer.size();
+        int i = 0;
+        while (i < size) {
+            byte b = buffer.peek(i++);
+
+            if (b == END) {
+                buffer.skip(i);
+                size -= i;
+                i = 0;
+                boolean complete = mLength > 0 && !mOverflow;
+                if (complete) frame.set(mFrame, 0, mLength);
+                mLength = 0;
+                mEscaped = false;
+                mOverflow = false;
+                if (complete) return true;
+                continue; // Empty or dropped frame, go on with the rest
+            }
+
+            if (mEscaped) {
+                append(b == ESC_END ? END : b == ESC_ESC ? ESC : b);
+                mEscaped = false;
+            } else if (b == ESC) {
+                mEscaped = true;
+            } else {
+                append(b);
+            }
+        }
+
+        buffer.skip(size); // Everything is in partial frame now
+        return false;
+    }
+
+    @Override
+    public FrameDecoder copy() {
+        return new SlipFrameDecoder(mMaxLength);
+    }
+
+    private void append(byte b) {
+        if (mLength == mMaxLength) {
+            mOverflow = true;
+            return;
+        }
+        if (mLength == mFrame.length) {
+            mFrame = Arrays.copyOf(mFrame, Math.min(mFrame.length * 2, mMaxLength));
+        }
+        mFrame[mLength++] = b;
+    }
+}
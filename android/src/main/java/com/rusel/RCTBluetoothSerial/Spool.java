@@ -0,0 +1,207 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded persistent store of received data, used while nobody on JS side
+ * listens. Records are appended to the current segment file, when it
+ * reaches half of the limit it replaces the previous segment, so the
+ * oldest data is dropped and disk usage never exceeds the limit.
+ * Files survive process death and are removed once drained.
+ *
+ * Record layout: time (long), device id (UTF), length (int), data.
+ */
+final class Spool {
+    private static final String CURRENT = "spool.1";
+    private static final String PREVIOUS = "spool.0";
+
+    private final File mCurrent;
+    private final File mPrevious;
+    private long mSegmentSize;
+
+    private DataOutputStream mOut; // Open on current segment, null until first append
+    private long mOutSize;
+    private long mDroppedBytes = 0;
+
+    /**
+     * One drained chunk of data
+     */
+    static final class Record {
+        final long time; // When the first byte was spooled
+        final String id;
+        final byte[] data;
+
+        Record(long time, String id, byte[] data) {
+            this.time = time;
+            this.id = id;
+            this.data = data;
+        }
+    }
+
+    /**
+     * @param dir Directory for segment files, created when missing
+     * @param maxBytes Maximal disk usage in bytes
+     */
+    Spool(File dir, long maxBytes) {
+        dir.mkdirs();
+        mCurrent = new File(dir, CURRENT);
+        mPrevious = new File(dir, PREVIOUS);
+        setMaxBytes(maxBytes);
+    }
+
+    /**
+     * Change limit, bigger segments are trimmed on next rotation
+     * @param maxBytes Maximal disk usage in bytes
+     */
+    synchronized void setMaxBytes(long maxBytes) {
+        mSegmentSize = Math.max(maxBytes / 2, 1024);
+    }
+
+    /**
+     * Append data, flushed to disk before returning
+     * @param id Device id
+     * @param data Bytes
+     * @param off Offset
+     * @param len Length
+     * @throws IOException When writing fails
+     */
+    synchronized void append(String id, byte[] data, int off, int len) throws IOException {
+        if (len <= 0) return;
+
+        // Keep only the newest part of data which would not fit any segment
+        int max = (int) Math.min(Integer.MAX_VALUE, mSegmentSize - 256);
+        if (len > max) {
+            mDroppedBytes += len - max;
+            off += len - max;
+            len = max;
+        }
+
+        if (mOut == null) {
+            open();
+        }
+        if (mOutSize + len + 256 > mSegmentSize) {
+            rotate();
+        }
+
+        int before = mOut.size();
+        mOut.writeLong(System.currentTimeMillis());
+        mOut.writeUTF(id);
+        mOut.writeInt(len);
+        mOut.write(data, off, len);
+        mOut.flush();
+        mOutSize += mOut.size() - before;
+    }
+
+    /**
+     * @return Number of bytes on disk, including record headers
+     */
+    synchronized long size() {
+        return (mOut != null ? mOutSize : mCurrent.length()) + mPrevious.length();
+    }
+
+    /**
+     * @return Number of bytes dropped because the spool was full, including record headers
+     */
+    synchronized long droppedBytes() {
+        return mDroppedBytes;
+    }
+
+    /**
+     * Read all spooled data in order and remove it. Consecutive records of
+     * the same device are merged, so JS gets a few large chunks.
+     * @return Records, empty when nothing was spooled
+     * @throws IOException When reading fails
+     */
+    synchronized List<Record> drain() throws IOException {
+        close();
+
+        List<Record> records = new ArrayList<>();
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        String chunkId = null;
+        long chunkTime = 0;
+
+        for (File file : new File[] {mPrevious, mCurrent}) {
+            if (!file.exists()) continue;
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                while (true) {
+                    long time;
+                    try {
+                        time = in.readLong();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    String id = in.readUTF();
+                    int length = in.readInt();
+                    if (length < 0 || length > mSegmentSize) break; // Garbage after cut short record
+                    byte[] data = new byte[length];
+                    in.readFully(data);
+
+                    if (!id.equals(chunkId)) {
+                        if (chunkId != null) {
+                            records.add(new Record(chunkTime, chunkId, chunk.toByteArray()));
+                        }
+                        chunk.reset();
+                        chunkId = id;
+                        chunkTime = time;
+                    }
+                    chunk.write(data);
+                }
+            } catch (EOFException e) {
+                // Record cut short by process death, everything before it is intact
+            } finally {
+                in.close();
+            }
+        }
+        if (chunkId != null) {
+            records.add(new Record(chunkTime, chunkId, chunk.toByteArray()));
+        }
+
+        mPrevious.delete();
+        mCurrent.delete();
+        mDroppedBytes = 0;
+        return records;
+    }
+
+    /**
+     * Close current segment, next append opens it again
+     */
+    synchronized void close() throws IOException {
+        if (mOut != null) {
+            mOut.close();
+            mOut = null;
+        }
+    }
+
+    private void open() throws IOException {
+        mOutSize = mCurrent.length();
+        mOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mCurrent, true)));
+    }
+
+    /**
+     * Current segment becomes previous one, dropping the oldest data
+     */
+    private void rotate() throws IOException {
+        close();
+        mDroppedBytes += mPrevious.length();
+        if (mPrevious.exists() && !mPrevious.delete()) {
+            throw new IOException("Unable to drop " + mPrevious);
+        }
+        if (mCurrent.exists() && !mCurrent.renameTo(mPrevious)) {
+            throw new IOException("Unable to rotate " + mCurrent);
+        }
+        open();
+    }
+}
@@ -0,0 +1,49 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter which can be incremented from many threads without them
+ * contending on one memory location. Every thread adds to its own cell,
+ * cells are one cache line apart and summed only when value is read.
+ */
+final class StripedCounter {
+    private static final int PADDING = 8; // Longs per cache line
+    private static final int STRIPES = stripes();
+
+    private final AtomicLongArray mCells = new AtomicLongArray(STRIPES * PADDING);
+
+    /**
+     * Add to counter
+     * @param delta Value to add
+     */
+    void add(long delta) {
+        mCells.getAndAdd(cell(), delta);
+    }
+
+    void increment() {
+        add(1);
+    }
+
+    /**
+     * @return Sum of all cells, not atomic snapshot while counter is updated
+     */
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += mCells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    private static int cell() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((hash >>> 16) & (STRIPES - 1)) * PADDING;
+    }
+
+    private static int stripes() {
+        int cpus = Math.max(Runtime.getRuntime().availableProcessors(), 1);
+        return Integer.highestOneBit(cpus * 2 - 1) << 1;
+    }
+}
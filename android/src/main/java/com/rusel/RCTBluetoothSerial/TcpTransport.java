@@ -0,0 +1,55 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Transport over TCP socket, used to run the pipeline against
+ * serial-to-TCP bridges or local test servers
+ */
+class TcpTransport implements Transport {
+    private final String mHost;
+    private final int mPort;
+    private final int mConnectTimeout;
+    private final Socket mSocket = new Socket();
+
+    /**
+     * @param host Host name or address
+     * @param port Port
+     * @param connectTimeout Connect timeout in milliseconds, 0 waits forever
+     */
+    TcpTransport(String host, int port, int connectTimeout) {
+        mHost = host;
+        mPort = port;
+        mConnectTimeout = connectTimeout;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        mSocket.connect(new InetSocketAddress(mHost, mPort), mConnectTimeout);
+        mSocket.setTcpNoDelay(true);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return mSocket.getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return mSocket.getOutputStream();
+    }
+
+    @Override
+    public String getName() {
+        return mHost + ":" + mPort;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mSocket.close();
+    }
+}
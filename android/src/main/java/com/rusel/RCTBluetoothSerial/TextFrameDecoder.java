@@ -0,0 +1,219 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * Lines of text ending with any of several delimiters, decoded with given
+ * charset. Bytes are copied from buffer in bulk into decoder, scanned
+ * once by delimiter matcher and fed to streaming charset decoder, which
+ * keeps incomplete multibyte sequence until its next bytes are read. Only
+ * last bytes which may still be part of delimiter are held back from it.
+ * Bytes stay in buffer until their line is complete, so raw reads see
+ * them, and decoder starts over when somebody else reads them. Frame gets
+ * raw line bytes and its decoded text. Lines longer than maximal length
+ * are dropped, line with delimiter has to fit in buffer.
+ */
+final class TextFrameDecoder implements FrameDecoder {
+    private final DelimiterMatcher mMatcher;
+    private final Charset mCharset;
+    private final String[] mDelimiterText;
+    private final boolean[] mBlank; // Whether delimiter is only white space
+    private final int mUnit; // Bytes of code unit, delimiter is matched only on its boundary
+    private final int mMaxLength;
+    private final boolean mStrip;
+    private final boolean mSkipEmpty;
+
+    private final CharsetDecoder mDecoder;
+    private byte[] mBytes = new byte[256];
+    private ByteBuffer mByteBuffer = ByteBuffer.wrap(mBytes);
+    private CharBuffer mChars = CharBuffer.allocate(64);
+    private RingBuffer mSource = null; // Buffer bytes are copied from
+    private long mSourcePosition = 0; // Buffer position of line start
+    private int mStart = 0;   // Start of line in bytes
+    private int mPos = 0;     // End of bytes scanned by matcher
+    private int mEnd = 0;     // End of bytes copied from buffer
+    private int mDecoded = 0; // End of bytes taken by charset decoder
+    private int mState = DelimiterMatcher.START;
+    private boolean mOverflow = false;
+
+    /**
+     * @param delimiters Delimiters, matched as bytes encoded with charset
+     * @param charset Charset of text, with explicit byte order for UTF-16
+     * @param maxLength Maximal length of line in bytes, without delimiter
+     * @param strip Whether delimiter is removed from line
+     * @param skipEmpty Whether empty lines are skipped, kept delimiter counts as text unless it is white space
+     * @throws IllegalArgumentException When charset puts byte order mark before encoded text
+     */
+    TextFrameDecoder(String[] delimiters, Charset charset, int maxLength, boolean strip, boolean skipEmpty) {
+        this(createMatcher(delimiters, checkByteOrder(charset)), charset, delimiters, maxLength, strip, skipEmpty);
+    }
+
+    private TextFrameDecoder(DelimiterMatcher matcher, Charset charset, String[] delimiters,
+                             int maxLength, boolean strip, boolean skipEmpty) {
+        mMatcher = matcher;
+        mCharset = charset;
+        mDelimiterText = delimiters;
+        mBlank = new boolean[delimiters.length];
+        for (int i = 0; i < delimiters.length; i++) mBlank[i] = delimiters[i].trim().isEmpty();
+        mUnit = "\0\0".getBytes(charset).length - "\0".getBytes(charset).length;
+        mMaxLength = maxLength;
+        mStrip = strip;
+        mSkipEmpty = skipEmpty;
+        mDecoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public boolean decode(RingBuffer buffer, Frame frame) {
+        if (buffer != mSource || buffer.position() != mSourcePosition) {
+            // Copied bytes were read past decoder
+            mSource = buffer;
+            mSourcePosition = buffer.position();
+            mStart = mPos = mEnd = 0;
+            nextLine(buffer);
+        }
+
+        do {
+            while (mPos < mEnd) {
+                mState = mMatcher.next(mState, mBytes[mPos++]);
+
+                int delimiter = mMatcher.match(mState);
+                if (delimiter < 0) continue;
+                int delimiterLength = mMatcher.get(delimiter).length;
+                if (!mOverflow && (mPos - mStart - delimiterLength) % mUnit != 0) continue; // Inside character
+
+                boolean complete = !mOverflow && complete(frame, delimiter, delimiterLength);
+                nextLine(buffer);
+                if (complete) return true;
+            }
+        } while (fill(buffer));
+
+        if (!mOverflow) decodeChars(mPos - mMatcher.depth(mState), false);
+        return false;
+    }
+
+    @Override
+    public FrameDecoder copy() {
+        return new TextFrameDecoder(mMatcher, mCharset, mDelimiterText, mMaxLength, mStrip, mSkipEmpty);
+    }
+
+    /**
+     * Finish line ended by delimiter
+     * @return Whether line goes out as frame
+     */
+    private boolean complete(Frame frame, int delimiter, int delimiterLength) {
+        int lineLength = mPos - mStart - delimiterLength;
+        if (lineLength > mMaxLength) return false;
+        if (lineLength == 0 && mSkipEmpty && (mStrip || mBlank[delimiter])) return false;
+
+        decodeChars(mStart + lineLength, true);
+        mChars.flip();
+        String text = mChars.toString();
+        if (mStrip) {
+            frame.set(mBytes, mStart, lineLength);
+        } else {
+            frame.set(mBytes, mStart, mPos - mStart);
+            text += mDelimiterText[delimiter];
+        }
+        frame.text = text;
+        frame.charset = mCharset;
+        return true;
+    }
+
+    /**
+     * Copy bytes from buffer once all copied bytes are scanned
+     * @return Whether there are new bytes to scan
+     */
+    private boolean fill(RingBuffer buffer) {
+        int copied = mEnd - mStart;
+        if (mOverflow || mPos - mStart - mMatcher.depth(mState) > mMaxLength) {
+            // Line is dropped, matcher goes on looking for its end
+            mOverflow = true;
+            skip(buffer, copied);
+            mStart = mPos = mEnd = mDecoded = copied = 0;
+        }
+        if (buffer.size() == copied) return false;
+
+        if (mEnd == mBytes.length) {
+            if (mStart > 0) {
+                System.arraycopy(mBytes, mStart, mBytes, 0, mEnd - mStart);
+                mPos -= mStart;
+                mEnd -= mStart;
+                mDecoded -= mStart;
+                mStart = 0;
+            } else {
+                mBytes = Arrays.copyOf(mBytes, mBytes.length * 2);
+                mByteBuffer = ByteBuffer.wrap(mBytes);
+            }
+        }
+
+        mEnd += buffer.peek(mBytes, mEnd, copied, mBytes.length - mEnd);
+        return true;
+    }
+
+    /**
+     * Feed line bytes up to end to charset decoder
+     * @param end End of bytes which are certainly not part of delimiter
+     * @param endOfInput Whether line ends there
+     */
+    private void decodeChars(int end, boolean endOfInput) {
+        if (end <= mDecoded && !endOfInput) return;
+
+        mByteBuffer.limit(end).position(mDecoded);
+        while (mDecoder.decode(mByteBuffer, mChars, endOfInput).isOverflow()) growChars();
+        if (endOfInput) {
+            while (mDecoder.flush(mChars).isOverflow()) growChars();
+        }
+        mDecoded = mByteBuffer.position(); // Incomplete sequence is kept for next bytes
+    }
+
+    private void growChars() {
+        CharBuffer chars = CharBuffer.allocate(mChars.capacity() * 2);
+        mChars.flip();
+        chars.put(mChars);
+        mChars = chars;
+    }
+
+    /**
+     * Drop finished line from buffer and start next one
+     */
+    private void nextLine(RingBuffer buffer) {
+        skip(buffer, mPos - mStart);
+        mStart = mPos;
+        mDecoded = mPos;
+        mState = DelimiterMatcher.START;
+        mOverflow = false;
+        mDecoder.reset();
+        mChars.clear();
+    }
+
+    private void skip(RingBuffer buffer, int length) {
+        buffer.skip(length);
+        mSourcePosition += length;
+    }
+
+    /**
+     * Delimiters encoded with byte order mark, like by plain UTF-16, would never match in the stream
+     */
+    private static Charset checkByteOrder(Charset charset) {
+        int one = "\0".getBytes(charset).length;
+        int two = "\0\0".getBytes(charset).length;
+        if (one != two - one) {
+            throw new IllegalArgumentException("Charset " + charset.name()
+                + " has no fixed byte order, use its BE or LE variant");
+        }
+        return charset;
+    }
+
+    private static DelimiterMatcher createMatcher(String[] delimiters, Charset charset) {
+        byte[][] encoded = new byte[delimiters.length][];
+        for (int i = 0; i < delimiters.length; i++) encoded[i] = delimiters[i].getBytes(charset);
+        return new DelimiterMatcher(encoded);
+    }
+}
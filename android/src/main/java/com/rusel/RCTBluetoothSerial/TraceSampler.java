@@ -0,0 +1,52 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sampled tracing of the data path. Logs every n-th event of one kind, so
+ * data flow can be followed in release builds where per frame debug logging
+ * is compiled out. Tracing is off by default, sampling then costs one
+ * volatile read and nothing is formatted.
+ */
+final class TraceSampler {
+    private static volatile int sInterval = 0; // 0 means off
+
+    private final String mName;
+    private final Logger mLog;
+    private final AtomicLong mCount = new AtomicLong();
+
+    /**
+     * @param name Name of traced event, used in log
+     * @param log Receives sampled events
+     */
+    TraceSampler(String name, Logger log) {
+        mName = name;
+        mLog = log;
+    }
+
+    /**
+     * Set sampling of all traces
+     * @param interval Log every interval-th event, 0 turns tracing off
+     */
+    static void setInterval(int interval) {
+        sInterval = Math.max(interval, 0);
+    }
+
+    /**
+     * Count event and decide whether it should be logged
+     * @return Whether to call log for this event
+     */
+    boolean sample() {
+        int interval = sInterval;
+        return interval > 0 && mCount.incrementAndGet() % interval == 0;
+    }
+
+    /**
+     * Log sampled event, only sizes are logged never the data
+     * @param id Device id
+     * @param bytes Number of bytes of event
+     */
+    void log(String id, int bytes) {
+        mLog.i("trace " + mName + " #" + mCount.get() + " " + id + " " + bytes + " bytes");
+    }
+}
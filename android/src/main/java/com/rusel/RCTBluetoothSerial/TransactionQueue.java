@@ -0,0 +1,130 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import com.facebook.react.bridge.Promise;
+
+/**
+ * Requests of one device waiting for response. Several requests may be
+ * outstanding, response frame completes the oldest request which matches
+ * it. Request without id matches any frame, so such requests are answered
+ * in order, request with id matches only frame which has the same bytes
+ * at response id offset. Request may bring its own framing, responses are
+ * decoded with it while it is the oldest pending request, and frames it
+ * cuts answer only requests with the same framing.
+ */
+final class TransactionQueue {
+    /**
+     * Single request waiting for response
+     */
+    static final class Transaction {
+        final Promise promise;
+        final byte[] id;           // Null to match in order
+        final int responseIdOffset;
+        final FrameDecoder decoder; // Null to use framing of device
+        Future<?> timeout;         // Guarded by queue
+
+        /**
+         * @param promise Resolved with response
+         * @param id Id bytes response has to contain, null to match any response
+         * @param responseIdOffset Offset of id in response frame
+         * @param decoder Framing of response, null for framing of device
+         */
+        Transaction(Promise promise, byte[] id, int responseIdOffset, FrameDecoder decoder) {
+            this.promise = promise;
+            this.id = id;
+            this.responseIdOffset = responseIdOffset;
+            this.decoder = decoder;
+        }
+
+        boolean matches(Frame frame) {
+            if (id == null) return true;
+            if (responseIdOffset + id.length > frame.length) return false;
+            for (int i = 0; i < id.length; i++) {
+                if (frame.data[responseIdOffset + i] != id[i]) return false;
+            }
+            return true;
+        }
+    }
+
+    private final LinkedList<Transaction> mPending = new LinkedList<>();
+    private volatile int mSize = 0; // Read without lock on every received frame
+
+    boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    synchronized void add(Transaction transaction) {
+        mPending.add(transaction);
+        mSize = mPending.size();
+    }
+
+    /**
+     * Remove transaction, when it timed out or its request failed
+     * @return Whether transaction was still pending
+     */
+    synchronized boolean remove(Transaction transaction) {
+        boolean removed = mPending.remove(transaction);
+        mSize = mPending.size();
+        return removed;
+    }
+
+    /**
+     * Get framing of the oldest pending transaction, received data are
+     * decoded with it until that transaction completes
+     * @return Decoder or null when device framing is used
+     */
+    FrameDecoder getDecoder() {
+        if (mSize == 0) return null;
+        synchronized (this) {
+            return mPending.isEmpty() ? null : mPending.getFirst().decoder;
+        }
+    }
+
+    /**
+     * @return Whether some pending transaction uses given framing
+     */
+    synchronized boolean uses(FrameDecoder decoder) {
+        for (Transaction transaction : mPending) {
+            if (transaction.decoder == decoder) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Take the oldest transaction answered by frame
+     * @param frame Received frame
+     * @param decoder Framing which cut the frame, null for framing of device
+     * @return Transaction or null when frame is not a response
+     */
+    synchronized Transaction match(Frame frame, FrameDecoder decoder) {
+        Iterator<Transaction> it = mPending.iterator();
+        while (it.hasNext()) {
+            Transaction transaction = it.next();
+            if (transaction.decoder == decoder && transaction.matches(frame)) {
+                it.remove();
+                mSize = mPending.size();
+                if (transaction.timeout != null) transaction.timeout.cancel(false);
+                return transaction;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Take all pending transactions, to fail them when connection is gone
+     */
+    synchronized List<Transaction> clear() {
+        List<Transaction> pending = new ArrayList<>(mPending);
+        for (Transaction transaction : pending) {
+            if (transaction.timeout != null) transaction.timeout.cancel(false);
+        }
+        mPending.clear();
+        mSize = 0;
+        return pending;
+    }
+}
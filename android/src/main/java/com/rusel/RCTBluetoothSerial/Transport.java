@@ -0,0 +1,50 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Byte stream link to a device. Connections in RCTBluetoothSerialService
+ * only talk to this interface, so the read and write pipeline can run over
+ * bluetooth sockets as well as over in-memory or TCP links.
+ */
+interface Transport extends Closeable {
+    /**
+     * Creates fresh transport for every connection attempt, transports are not reused
+     */
+    interface Factory {
+        Transport create();
+    }
+
+    /**
+     * Open the link, blocks until it is established
+     * @throws IOException When link cannot be established
+     */
+    void connect() throws IOException;
+
+    /**
+     * @return Stream of data received from device, valid after connect
+     * @throws IOException When stream is not available
+     */
+    InputStream getInputStream() throws IOException;
+
+    /**
+     * @return Stream of data sent to device, valid after connect
+     * @throws IOException When stream is not available
+     */
+    OutputStream getOutputStream() throws IOException;
+
+    /**
+     * @return Human readable name of remote end
+     */
+    String getName();
+
+    /**
+     * Close the link, may be called from any thread to abort
+     * pending connect or read
+     * @throws IOException When closing fails
+     */
+    void close() throws IOException;
+}
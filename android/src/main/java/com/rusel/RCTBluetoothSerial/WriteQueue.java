@@ -0,0 +1,214 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+
+/**
+ * Bounded queue of pending writes. Any thread may offer data, one writer
+ * at a time drains it into output stream, coalescing small writes into one
+ * larger socket write. Callback of each write is called only after its
+ * bytes were handed to the stream and flushed.
+ *
+ * Queue does not own a thread, offer tells caller when drain has to be
+ * started and drain returns once the queue is empty, so writers of many
+ * connections can share one thread pool.
+ */
+final class WriteQueue {
+    /**
+     * Completion callback of single write
+     */
+    interface Callback {
+        void onComplete();
+        void onFailure(Exception e);
+    }
+
+    // Writes smaller than this are copied together into one socket write
+    private static final int COALESCE_SIZE = 4096;
+
+    private final ArrayDeque<Entry> mQueue = new ArrayDeque<>();
+    private final ArrayDeque<Entry> mBatch = new ArrayDeque<>();
+    private final byte[] mScratch = new byte[COALESCE_SIZE];
+    private final int mMaxBytes;
+    private final ConnectionStats mStats;
+
+    private int mQueuedBytes = 0;
+    private int mWritingBytes = 0;
+    private int mLastBatchSize = 0; // Writer only
+    private boolean mDraining = false;
+    private Exception mClosed = null;
+
+    /**
+     * Create write queue
+     * @param maxBytes Maximal number of queued bytes
+     * @param stats Stats which get every completed write, may be null
+     */
+    WriteQueue(int maxBytes, ConnectionStats stats) {
+        mMaxBytes = maxBytes;
+        mStats = stats;
+    }
+
+    /**
+     * Queue data for writing
+     * @param data Bytes to write
+     * @param callback Completion callback, may be null
+     * @return True if queue was idle and caller has to start drain
+     */
+    boolean offer(byte[] data, Callback callback) {
+        return offer(data, data.length, callback);
+    }
+
+    /**
+     * Queue beginning of array for writing, array must not be changed
+     * until callback is called
+     * @param data Bytes to write
+     * @param length Number of bytes from the start of array
+     * @param callback Completion callback, may be null
+     * @return True if queue was idle and caller has to start drain
+     */
+    boolean offer(byte[] data, int length, Callback callback) {
+        boolean startDrain = false;
+        Exception failure = null;
+        synchronized (this) {
+            if (mClosed != null) {
+                failure = mClosed;
+            } else if (mQueuedBytes > 0 && mQueuedBytes + length > mMaxBytes) {
+                failure = new IOException("Write queue is full");
+            } else {
+                mQueue.add(new Entry(data, length, callback));
+                mQueuedBytes += length;
+                startDrain = !mDraining;
+                mDraining = true;
+            }
+        }
+
+        if (failure != null && callback != null) {
+            callback.onFailure(failure);
+        }
+        return startDrain;
+    }
+
+    /**
+     * @return Number of writes waiting in queue
+     */
+    synchronized int depth() {
+        return mQueue.size();
+    }
+
+    /**
+     * @return Number of bytes queued or being written
+     */
+    synchronized int bytesInFlight() {
+        return mQueuedBytes + mWritingBytes;
+    }
+
+    /**
+     * @return Number of bytes written by last drain, for the writer which called it
+     */
+    int lastBatchSize() {
+        return mLastBatchSize;
+    }
+
+    /**
+     * Write next batch of queued data, called in loop by writer until it returns false
+     * @param out Output stream
+     * @return False when queue is empty and writer should stop
+     * @throws IOException When write fails, all taken writes are failed before
+     */
+    boolean drainTo(OutputStream out) throws IOException {
+        synchronized (this) {
+            if (mQueue.isEmpty() || mClosed != null) {
+                mDraining = false;
+                return false;
+            }
+
+            // Take all small writes which fit into one socket write, or single large write
+            int bytes = 0;
+            Entry entry;
+            while ((entry = mQueue.peek()) != null
+                    && (bytes == 0 || bytes + entry.length <= COALESCE_SIZE)) {
+                mQueue.poll();
+                mBatch.add(entry);
+                bytes += entry.length;
+            }
+            mQueuedBytes -= bytes;
+            mWritingBytes = bytes;
+            mLastBatchSize = bytes;
+        }
+
+        try {
+            if (mBatch.size() == 1) {
+                out.write(mBatch.peek().data, 0, mBatch.peek().length);
+            } else {
+                int offset = 0;
+                for (Entry e : mBatch) {
+                    System.arraycopy(e.data, 0, mScratch, offset, e.length);
+                    offset += e.length;
+                }
+                out.write(mScratch, 0, offset);
+            }
+            out.flush();
+        } catch (IOException e) {
+            completeBatch(e);
+            synchronized (this) {
+                mDraining = false;
+            }
+            throw e;
+        }
+        completeBatch(null);
+        return true;
+    }
+
+    /**
+     * Fail all pending writes and reject new ones
+     * @param cause Reason passed to callbacks
+     */
+    void close(Exception cause) {
+        ArrayDeque<Entry> pending;
+        synchronized (this) {
+            if (mClosed != null) return;
+            mClosed = cause;
+            pending = new ArrayDeque<>(mQueue);
+            mQueue.clear();
+            mQueuedBytes = 0;
+        }
+
+        for (Entry e : pending) {
+            if (e.callback != null) e.callback.onFailure(cause);
+        }
+    }
+
+    /**
+     * Notify callbacks of writes taken by last drain
+     */
+    private void completeBatch(Exception failure) {
+        boolean record = failure == null && mStats != null;
+        long now = record ? System.nanoTime() : 0;
+        Entry e;
+        while ((e = mBatch.poll()) != null) {
+            if (record) mStats.recordWrite(e.length, now - e.queuedAt);
+            if (e.callback == null) continue;
+            if (failure == null) {
+                e.callback.onComplete();
+            } else {
+                e.callback.onFailure(failure);
+            }
+        }
+        synchronized (this) {
+            mWritingBytes = 0;
+        }
+    }
+
+    private static final class Entry {
+        final byte[] data;
+        final int length;
+        final Callback callback;
+        final long queuedAt = System.nanoTime();
+
+        Entry(byte[] data, int length, Callback callback) {
+            this.data = data;
+            this.length = length;
+            this.callback = callback;
+        }
+    }
+}
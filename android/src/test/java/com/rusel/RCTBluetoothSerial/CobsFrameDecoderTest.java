@@ -0,0 +1,85 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CobsFrameDecoderTest {
+    private final RingBuffer mBuffer = new RingBuffer(1024);
+    private final Frame mFrame = new Frame(2);
+
+    @Test
+    public void zerosAreRestored() {
+        FrameDecoder decoder = new CobsFrameDecoder(64);
+        // 11 00 00 22 encoded
+        write(0x02, 0x11, 0x01, 0x02, 0x22, 0x00);
+
+        assertFrame(decoder, 0x11, 0x00, 0x00, 0x22);
+    }
+
+    @Test
+    public void frameSplitBetweenReads() {
+        FrameDecoder decoder = new CobsFrameDecoder(64);
+        write(0x03, 0x11);
+        assertFalse(decoder.decode(mBuffer, mFrame));
+        write(0x22, 0x02);
+        assertFalse(decoder.decode(mBuffer, mFrame));
+        write(0x33, 0x00);
+
+        assertFrame(decoder, 0x11, 0x22, 0x00, 0x33);
+    }
+
+    @Test
+    public void fullBlockImpliesNoZero() {
+        FrameDecoder decoder = new CobsFrameDecoder(1024);
+        byte[] encoded = new byte[258];
+        int[] expected = new int[255];
+        encoded[0] = (byte) 0xFF;
+        for (int i = 0; i < 254; i++) {
+            encoded[i + 1] = (byte) (i + 1);
+            expected[i] = i + 1;
+        }
+        encoded[255] = 0x02;
+        encoded[256] = 0x07;
+        expected[254] = 0x07;
+        mBuffer.write(encoded, 0, encoded.length - 1);
+        write(0x00);
+
+        assertFrame(decoder, expected);
+    }
+
+    @Test
+    public void truncatedBlockIsDropped() {
+        FrameDecoder decoder = new CobsFrameDecoder(64);
+        // Block promises 4 data bytes but frame ends after 2
+        write(0x05, 0x11, 0x22, 0x00, 0x02, 0x44, 0x00);
+
+        assertFrame(decoder, 0x44);
+        assertFalse(decoder.decode(mBuffer, mFrame));
+    }
+
+    @Test
+    public void tooLongFrameIsDropped() {
+        FrameDecoder decoder = new CobsFrameDecoder(2);
+        write(0x04, 1, 2, 3, 0x00, 0x02, 4, 0x00);
+
+        assertFrame(decoder, 4);
+    }
+
+    private void write(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) bytes[i] = (byte) values[i];
+        mBuffer.write(bytes, 0, bytes.length);
+    }
+
+    private void assertFrame(FrameDecoder decoder, int... expected) {
+        assertTrue("No frame", decoder.decode(mBuffer, mFrame));
+        byte[] bytes = new byte[expected.length];
+        for (int i = 0; i < expected.length; i++) bytes[i] = (byte) expected[i];
+        assertArrayEquals(bytes, Arrays.copyOf(mFrame.data, mFrame.length));
+    }
+}
@@ -0,0 +1,55 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DelimiterFrameDecoderTest {
+    private final RingBuffer mBuffer = new RingBuffer(256);
+    private final Frame mFrame = new Frame(4);
+    private final FrameDecoder mDecoder = new DelimiterFrameDecoder(new byte[] {'\r', '\n'});
+
+    @Test
+    public void framesKeepDelimiter() {
+        write("one\r\ntwo\r\n");
+
+        assertFrame("one\r\n");
+        assertFrame("two\r\n");
+        assertFalse(mDecoder.decode(mBuffer, mFrame));
+    }
+
+    @Test
+    public void delimiterSplitBetweenReads() {
+        write("lo");
+        assertFalse(mDecoder.decode(mBuffer, mFrame));
+        write("ng\r");
+        assertFalse(mDecoder.decode(mBuffer, mFrame));
+        write("\nnext");
+
+        assertFrame("long\r\n");
+        assertFalse(mDecoder.decode(mBuffer, mFrame));
+        assertEquals(4, mBuffer.size());
+    }
+
+    @Test
+    public void partOfDelimiterIsData() {
+        write("a\rb\r\n");
+
+        assertFrame("a\rb\r\n");
+    }
+
+    private void write(String text) {
+        byte[] bytes = text.getBytes();
+        mBuffer.write(bytes, 0, bytes.length);
+    }
+
+    private void assertFrame(String expected) {
+        assertTrue("No frame", mDecoder.decode(mBuffer, mFrame));
+        assertArrayEquals(expected.getBytes(), Arrays.copyOf(mFrame.data, mFrame.length));
+    }
+}
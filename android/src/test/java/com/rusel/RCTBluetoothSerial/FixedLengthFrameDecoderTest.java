@@ -0,0 +1,49 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FixedLengthFrameDecoderTest {
+    private final RingBuffer mBuffer = new RingBuffer(256);
+    private final Frame mFrame = new Frame(2);
+    private final FrameDecoder mDecoder = new FixedLengthFrameDecoder(3);
+
+    @Test
+    public void frameSplitBetweenReads() {
+        write(1, 2);
+        assertFalse(mDecoder.decode(mBuffer, mFrame));
+        write(3, 4);
+
+        assertTrue(mDecoder.decode(mBuffer, mFrame));
+        assertArrayEquals(new byte[] {1, 2, 3}, Arrays.copyOf(mFrame.data, mFrame.length));
+        assertFalse(mDecoder.decode(mBuffer, mFrame));
+        assertEquals(1, mBuffer.size());
+    }
+
+    @Test
+    public void severalFramesInOneRead() {
+        write(1, 2, 3, 4, 5, 6);
+
+        assertTrue(mDecoder.decode(mBuffer, mFrame));
+        assertTrue(mDecoder.decode(mBuffer, mFrame));
+        assertArrayEquals(new byte[] {4, 5, 6}, Arrays.copyOf(mFrame.data, mFrame.length));
+        assertFalse(mDecoder.decode(mBuffer, mFrame));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lengthMustBePositive() {
+        new FixedLengthFrameDecoder(0);
+    }
+
+    private void write(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) bytes[i] = (byte) values[i];
+        mBuffer.write(bytes, 0, bytes.length);
+    }
+}
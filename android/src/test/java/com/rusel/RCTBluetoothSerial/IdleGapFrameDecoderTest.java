@@ -0,0 +1,49 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IdleGapFrameDecoderTest {
+    private static final long GAP = 200 * 1000000L;
+
+    private final RingBuffer mBuffer = new RingBuffer(256);
+    private final Frame mFrame = new Frame(16);
+    private final FrameDecoder mDecoder = new IdleGapFrameDecoder(GAP, 64);
+
+    @Test
+    public void frameEndsWithSilence() throws Exception {
+        mDecoder.decode(mBuffer, mFrame);
+        write(1, 2);
+        write(3);
+        assertFalse("Gap did not elapse yet", mDecoder.decode(mBuffer, mFrame));
+
+        Thread.sleep(GAP / 1000000 + 50);
+        assertTrue(mDecoder.decode(mBuffer, mFrame));
+        assertArrayEquals(new byte[] {1, 2, 3}, Arrays.copyOf(mFrame.data, mFrame.length));
+    }
+
+    @Test
+    public void lateCheckDoesNotMergeNextFrame() throws Exception {
+        mDecoder.decode(mBuffer, mFrame);
+        write(1, 2);
+        Thread.sleep(GAP / 1000000 + 50);
+        write(3, 4); // Next frame starts before anybody checked the gap
+
+        assertTrue(mDecoder.decode(mBuffer, mFrame));
+        assertArrayEquals(new byte[] {1, 2}, Arrays.copyOf(mFrame.data, mFrame.length));
+        assertFalse(mDecoder.decode(mBuffer, mFrame));
+        assertEquals(2, mBuffer.size());
+    }
+
+    private void write(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) bytes[i] = (byte) values[i];
+        mBuffer.write(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,63 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LengthFieldFrameDecoderTest {
+    private final RingBuffer mBuffer = new RingBuffer(256);
+    private final Frame mFrame = new Frame(2);
+
+    @Test
+    public void headerAndBodySplitBetweenReads() {
+        FrameDecoder decoder = new LengthFieldFrameDecoder(1, 2, false, 0, 64);
+        write(0xAA, 0x00);
+        assertFalse(decoder.decode(mBuffer, mFrame));
+        write(0x02, 7);
+        assertFalse(decoder.decode(mBuffer, mFrame));
+        write(8);
+
+        assertFrame(decoder, 0xAA, 0x00, 0x02, 7, 8);
+    }
+
+    @Test
+    public void littleEndianWithAdjustment() {
+        // Length counts the whole frame, so adjustment subtracts header
+        FrameDecoder decoder = new LengthFieldFrameDecoder(0, 2, true, -2, 64);
+        write(0x04, 0x00, 1, 2, 0x03, 0x00, 3);
+
+        assertFrame(decoder, 0x04, 0x00, 1, 2);
+        assertFrame(decoder, 0x03, 0x00, 3);
+    }
+
+    @Test
+    public void impossibleLengthResynchronizes() {
+        FrameDecoder decoder = new LengthFieldFrameDecoder(0, 1, false, 0, 8);
+        write(0xFF, 0x01, 9);
+
+        assertFrame(decoder, 0x01, 9);
+        assertFalse(decoder.decode(mBuffer, mFrame));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void widthIsLimited() {
+        new LengthFieldFrameDecoder(0, 5, false, 0, 64);
+    }
+
+    private void write(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) bytes[i] = (byte) values[i];
+        mBuffer.write(bytes, 0, bytes.length);
+    }
+
+    private void assertFrame(FrameDecoder decoder, int... expected) {
+        assertTrue("No frame", decoder.decode(mBuffer, mFrame));
+        byte[] bytes = new byte[expected.length];
+        for (int i = 0; i < expected.length; i++) bytes[i] = (byte) expected[i];
+        assertArrayEquals(bytes, Arrays.copyOf(mFrame.data, mFrame.length));
+    }
+}
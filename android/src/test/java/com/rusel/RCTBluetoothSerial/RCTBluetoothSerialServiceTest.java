@@ -0,0 +1,229 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RCTBluetoothSerialServiceTest {
+    private static final String ID = "device";
+    private static final long TIMEOUT = 5000;
+
+    private RecordingListener mListener;
+    private RCTBluetoothSerialService mService;
+
+    @Before
+    public void setUp() {
+        mListener = new RecordingListener();
+        mService = new RCTBluetoothSerialService(mListener, mListener);
+    }
+
+    @After
+    public void tearDown() {
+        mService.stop();
+    }
+
+    @Test
+    public void connectsOverLoopback() throws Exception {
+        connect(new LoopbackTransport(1024));
+
+        assertEquals("success:" + ID, mListener.next(TIMEOUT));
+        assertTrue(mService.isConnected(ID));
+        assertEquals(1, mService.getConnectedDevices().size());
+    }
+
+    @Test
+    public void receivedDataAreReadAsFrames() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport(1024);
+        connect(transport);
+        assertEquals("success:" + ID, mListener.next(TIMEOUT));
+
+        byte[] data = "one\ntwo\n".getBytes("US-ASCII");
+        transport.feed(data, 0, data.length);
+        awaitAvailable(data.length);
+
+        FrameDecoder decoder = new DelimiterFrameDecoder(new byte[] {'\n'});
+        Frame frame = new Frame(16);
+        assertTrue(mService.readFrame(ID, decoder, frame));
+        assertEquals("one\n", new String(frame.data, 0, frame.length, "US-ASCII"));
+        assertTrue(mService.readFrame(ID, decoder, frame));
+        assertEquals("two\n", new String(frame.data, 0, frame.length, "US-ASCII"));
+        assertFalse(mService.readFrame(ID, decoder, frame));
+        assertEquals(2, mService.getStats(ID).framesIn.sum());
+    }
+
+    @Test
+    public void droppedBytesAreNotCountedAsRead() throws Exception {
+        mService.setReadBuffer(64, RCTBluetoothSerialService.OverflowPolicy.DROP_NEWEST);
+        LoopbackTransport transport = new LoopbackTransport(1024);
+        connect(transport);
+        assertEquals("success:" + ID, mListener.next(TIMEOUT));
+
+        transport.feed(new byte[64], 0, 64);
+        awaitAvailable(64);
+        transport.feed(new byte[100], 0, 100);
+        ConnectionStats stats = mService.getStats(ID);
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (stats.droppedBytes.sum() < 100) {
+            assertTrue("Overflow was not dropped", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+
+        assertEquals(100, stats.droppedBytes.sum());
+        assertEquals(64, stats.bytesIn.sum());
+        assertEquals(64, mService.available(ID));
+    }
+
+    @Test
+    public void writtenDataComeBack() throws Exception {
+        connect(new LoopbackTransport(1024));
+        assertEquals("success:" + ID, mListener.next(TIMEOUT));
+
+        byte[] data = {1, 2, 3, 4};
+        Result result = new Result();
+        mService.write(ID, data, result);
+        result.await();
+        awaitAvailable(data.length);
+
+        assertArrayEquals(data, mService.read(ID));
+    }
+
+    @Test
+    public void writeFailsWhenNotConnected() throws Exception {
+        Result result = new Result();
+        mService.write(ID, new byte[] {1}, result);
+        assertEquals("Not connected", result.awaitFailure().getMessage());
+    }
+
+    @Test
+    public void closedTransportLosesConnection() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport(1024);
+        connect(transport);
+        assertEquals("success:" + ID, mListener.next(TIMEOUT));
+
+        byte[] data = {42};
+        transport.feed(data, 0, data.length);
+        awaitAvailable(data.length);
+        transport.close();
+
+        assertEquals("lost:" + ID, mListener.next(TIMEOUT));
+        assertFalse(mService.isConnected(ID));
+        assertArrayEquals("Data received before loss stay readable", data, mService.read(ID));
+    }
+
+    @Test
+    public void failedConnectIsReported() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport(1024);
+        transport.simulateConnect(0, new IOException("Unreachable"));
+        connect(transport);
+
+        assertEquals("failed:" + ID, mListener.next(TIMEOUT));
+        assertFalse(mService.isConnected(ID));
+    }
+
+    @Test
+    public void connectsOverTcp() throws Exception {
+        final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Thread echo = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = server.accept();
+                    InputStream in = socket.getInputStream();
+                    OutputStream out = socket.getOutputStream();
+                    byte[] buffer = new byte[256];
+                    int n;
+                    while ((n = in.read(buffer)) > 0) out.write(buffer, 0, n);
+                    socket.close();
+                } catch (IOException e) {
+                    // Test fails on missing echo
+                }
+            }
+        });
+        echo.start();
+
+        try {
+            final int port = server.getLocalPort();
+            mService.connect(ID, new Transport.Factory() {
+                @Override
+                public Transport create() {
+                    return new TcpTransport("127.0.0.1", port, (int) TIMEOUT);
+                }
+            });
+            assertEquals("success:" + ID, mListener.next(TIMEOUT));
+
+            byte[] data = "ping\n".getBytes("US-ASCII");
+            Result result = new Result();
+            mService.write(ID, data, result);
+            result.await();
+            awaitAvailable(data.length);
+            assertArrayEquals(data, mService.read(ID));
+
+            mService.stop(ID);
+            echo.join(TIMEOUT);
+            assertFalse(echo.isAlive());
+        } finally {
+            server.close();
+        }
+    }
+
+    private void connect(final Transport transport) {
+        mService.connect(ID, new Transport.Factory() {
+            @Override
+            public Transport create() {
+                return transport;
+            }
+        });
+    }
+
+    private void awaitAvailable(int bytes) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (mService.available(ID) < bytes) {
+            assertTrue("Data did not arrive", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Write callback which can be awaited
+     */
+    private static class Result implements WriteQueue.Callback {
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private final AtomicReference<Exception> mFailure = new AtomicReference<>();
+
+        @Override
+        public void onComplete() {
+            mDone.countDown();
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            mFailure.set(e);
+            mDone.countDown();
+        }
+
+        void await() throws Exception {
+            assertTrue("Write did not finish", mDone.await(TIMEOUT, TimeUnit.MILLISECONDS));
+            if (mFailure.get() != null) throw mFailure.get();
+        }
+
+        Exception awaitFailure() throws InterruptedException {
+            assertTrue("Write did not finish", mDone.await(TIMEOUT, TimeUnit.MILLISECONDS));
+            return mFailure.get();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RacingTransportTest {
+    private static final long TIMEOUT = 5000;
+    private static final long SEQUENTIAL = -1;
+    private static final long PARALLEL = 0;
+
+    private RecordingListener mListener;
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        mListener = new RecordingListener();
+        mExecutor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void sequentialStartsNextAfterFailure() throws Exception {
+        Candidate first = new Candidate("first", 100, new IOException("Refused"));
+        Candidate second = new Candidate("second", 0, null);
+        RacingTransport racing = race(SEQUENTIAL, first, second);
+
+        racing.connect();
+
+        assertEquals("second", racing.getName());
+        assertTrue("Second started before first failed", second.mStarted - first.mStarted >= 100);
+        assertFalse(second.isClosed());
+    }
+
+    @Test
+    public void sequentialDoesNotStartOthersWhenFirstConnects() throws Exception {
+        Candidate first = new Candidate("first", 50, null);
+        Candidate second = new Candidate("second", 0, null);
+        RacingTransport racing = race(SEQUENTIAL, first, second);
+
+        racing.connect();
+
+        assertEquals("first", racing.getName());
+        assertEquals(0, second.mStarted);
+        awaitClosed(second);
+        assertFalse(first.isClosed());
+    }
+
+    @Test
+    public void staggeredStartsNextWhilePreviousIsConnecting() throws Exception {
+        Candidate slow = new Candidate("slow", 2000, null);
+        Candidate fast = new Candidate("fast", 0, null);
+        RacingTransport racing = race(50, slow, fast);
+
+        long start = System.currentTimeMillis();
+        racing.connect();
+
+        assertEquals("fast", racing.getName());
+        assertTrue("Fast started before stagger elapsed", fast.mStarted - start >= 50);
+        assertTrue("Did not wait for stagger only", System.currentTimeMillis() - start < 1000);
+        awaitClosed(slow);
+        assertFalse(fast.isClosed());
+    }
+
+    @Test
+    public void parallelStartsAllAtOnce() throws Exception {
+        Candidate first = new Candidate("first", 300, null);
+        Candidate second = new Candidate("second", 50, null);
+        Candidate third = new Candidate("third", 200, null);
+        RacingTransport racing = race(PARALLEL, first, second, third);
+
+        racing.connect();
+
+        assertEquals("second", racing.getName());
+        assertTrue(third.mStarted - first.mStarted < 50);
+        awaitClosed(first);
+        awaitClosed(third);
+        assertFalse(second.isClosed());
+    }
+
+    @Test
+    public void lastFailureIsThrownWhenAllFail() throws Exception {
+        IOException failure = new IOException("Second refused");
+        RacingTransport racing = race(PARALLEL,
+            new Candidate("first", 0, new IOException("First refused")),
+            new Candidate("second", 50, failure));
+
+        try {
+            racing.connect();
+            fail("Connected");
+        } catch (IOException e) {
+            assertEquals(failure, e);
+        }
+    }
+
+    @Test
+    public void closeAbortsConnectingCandidates() throws Exception {
+        Candidate first = new Candidate("first", 10000, null);
+        Candidate second = new Candidate("second", 10000, null);
+        final RacingTransport racing = race(PARALLEL, first, second);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+
+        Thread connecting = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    racing.connect();
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+            }
+        });
+        connecting.start();
+        Thread.sleep(50);
+        racing.close();
+        connecting.join(TIMEOUT);
+
+        assertFalse(connecting.isAlive());
+        assertEquals("Transport closed", failure.get().getMessage());
+        awaitClosed(first);
+        awaitClosed(second);
+    }
+
+    @Test
+    public void connectTimeoutClosesCandidates() throws Exception {
+        RCTBluetoothSerialService service = new RCTBluetoothSerialService(mListener, mListener);
+        try {
+            service.setConnectOptions(100, 20);
+            Candidate first = new Candidate("first", 10000, null);
+            Candidate second = new Candidate("second", 10000, null);
+            connect(service, first, second);
+
+            assertEquals("failed:device", mListener.next(TIMEOUT));
+            awaitClosed(first);
+            awaitClosed(second);
+        } finally {
+            service.stop();
+        }
+    }
+
+    @Test
+    public void stopClosesCandidates() throws Exception {
+        RCTBluetoothSerialService service = new RCTBluetoothSerialService(mListener, mListener);
+        try {
+            service.setConnectOptions(0, PARALLEL);
+            Candidate first = new Candidate("first", 10000, null);
+            Candidate second = new Candidate("second", 10000, null);
+            connect(service, first, second);
+
+            Thread.sleep(50);
+            service.stop("device");
+            awaitClosed(first);
+            awaitClosed(second);
+            assertEquals("Canceled connect is not reported", null, mListener.next(100));
+        } finally {
+            service.stop();
+        }
+    }
+
+    private RacingTransport race(long stagger, Transport... candidates) {
+        return new RacingTransport(Arrays.asList(candidates), stagger, mExecutor, mListener);
+    }
+
+    private void connect(final RCTBluetoothSerialService service, Transport... candidates) {
+        final List<Transport> list = Arrays.asList(candidates);
+        service.connect("device", new Transport.Factory() {
+            @Override
+            public Transport create() {
+                return service.race(list);
+            }
+        });
+    }
+
+    private static void awaitClosed(LoopbackTransport transport) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!transport.isClosed()) {
+            assertTrue("Transport was not closed", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Loopback with simulated connect which remembers when it started
+     */
+    private static class Candidate extends LoopbackTransport {
+        private final String mName;
+        private volatile long mStarted = 0;
+
+        Candidate(String name, long delay, IOException failure) {
+            super(64);
+            mName = name;
+            simulateConnect(delay, failure);
+        }
+
+        @Override
+        public void connect() throws IOException {
+            mStarted = System.currentTimeMillis();
+            super.connect();
+        }
+
+        @Override
+        public String getName() {
+            return mName;
+        }
+    }
+}
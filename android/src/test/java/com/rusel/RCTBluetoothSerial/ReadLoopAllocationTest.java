@@ -0,0 +1,147 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Steady state read loop of the service must not allocate: bytes are read
+ * from transport into ring buffer and the listener decodes every complete
+ * frame into reused frame on the reader thread. Allocations of the reader
+ * thread are counted by the JVM between two frames well after warm up.
+ */
+public class ReadLoopAllocationTest {
+    private static final String ID = "device";
+    private static final int FRAME_SIZE = 64;
+    private static final int STREAM_FRAMES = 256;
+    private static final int WARMUP_FRAMES = 1000000;
+    private static final int MEASURED_FRAMES = 100000;
+    private static final long TIMEOUT = 60000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private RCTBluetoothSerialService mService;
+
+    @Before
+    public void setUp() {
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        if (mService != null) mService.stop();
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void delimiterFramingDoesNotAllocate() throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (int n = 0; n < STREAM_FRAMES; n++) {
+            stream.write(payload(), 0, FRAME_SIZE - 1);
+            stream.write('\n');
+        }
+        assertNoAllocation(new DelimiterFrameDecoder(new byte[] {'\n'}), stream.toByteArray());
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void lengthFieldFramingDoesNotAllocate() throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (int n = 0; n < STREAM_FRAMES; n++) {
+            stream.write(0);
+            stream.write(FRAME_SIZE);
+            stream.write(payload());
+        }
+        assertNoAllocation(new LengthFieldFrameDecoder(0, 2, false, 0, 1024), stream.toByteArray());
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void slipFramingDoesNotAllocate() throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (int n = 0; n < STREAM_FRAMES; n++) {
+            stream.write(payload());
+            stream.write(0xC0);
+        }
+        assertNoAllocation(new SlipFrameDecoder(1024), stream.toByteArray());
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void cobsFramingDoesNotAllocate() throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (int n = 0; n < STREAM_FRAMES; n++) {
+            stream.write(FRAME_SIZE + 1); // Payload has no zeros, one block
+            stream.write(payload());
+            stream.write(0);
+        }
+        assertNoAllocation(new CobsFrameDecoder(1024), stream.toByteArray());
+    }
+
+    private void assertNoAllocation(FrameDecoder decoder, byte[] stream) throws Exception {
+        FramingListener listener = new FramingListener(decoder);
+        mService = new RCTBluetoothSerialService(listener, listener);
+        listener.mService = mService;
+
+        final LoopbackTransport transport = new LoopbackTransport(4096);
+        mService.connect(ID, new Transport.Factory() {
+            @Override
+            public Transport create() {
+                return transport;
+            }
+        });
+        assertEquals("success:" + ID, listener.next(5000));
+
+        // Writer blocks while loopback is full, so reader keeps up with it
+        while (listener.mDone.getCount() > 0) {
+            transport.feed(stream, 0, stream.length);
+        }
+
+        assertEquals("Bytes allocated by read loop", 0, listener.mAllocated);
+    }
+
+    private static byte[] payload() {
+        byte[] payload = new byte[FRAME_SIZE];
+        for (int i = 0; i < FRAME_SIZE; i++) payload[i] = (byte) ('A' + i % 26);
+        return payload;
+    }
+
+    /**
+     * Decodes frames on reader thread like the module and counts its allocations
+     */
+    private static class FramingListener extends RecordingListener {
+        private final FrameDecoder mDecoder;
+        private final Frame mFrame = new Frame(FRAME_SIZE);
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private volatile RCTBluetoothSerialService mService;
+        private long mFrames = 0;
+        private long mStart = -1;
+        private long mOverhead = 0; // Allocated by measuring itself
+        private volatile long mAllocated = -1;
+
+        FramingListener(FrameDecoder decoder) {
+            mDecoder = decoder;
+        }
+
+        @Override
+        public void onData(String id) {
+            while (mService.readFrame(id, mDecoder, mFrame)) mFrames++;
+
+            if (mStart < 0 && mFrames >= WARMUP_FRAMES) {
+                long before = allocated();
+                mStart = allocated();
+                mOverhead = mStart - before;
+            } else if (mStart >= 0 && mAllocated < 0 && mFrames >= WARMUP_FRAMES + MEASURED_FRAMES) {
+                mAllocated = allocated() - mStart - mOverhead;
+                mDone.countDown();
+            }
+        }
+
+        private static long allocated() {
+            return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
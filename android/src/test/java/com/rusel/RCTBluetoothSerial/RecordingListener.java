@@ -0,0 +1,78 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection listener of tests, events are queued as "event:id" and
+ * awaited in order. Also logger which prints to standard output.
+ */
+class RecordingListener implements ConnectionListener, Logger {
+    private final BlockingQueue<String> mEvents = new LinkedBlockingQueue<>();
+
+    /**
+     * Wait for next event which is not data
+     * @param millis Timeout in milliseconds
+     * @return Event, null on timeout
+     */
+    String next(long millis) throws InterruptedException {
+        return mEvents.poll(millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onConnectionSuccess(String id, String msg) {
+        mEvents.add("success:" + id);
+    }
+
+    @Override
+    public void onConnectionFailed(String id, String msg) {
+        mEvents.add("failed:" + id);
+    }
+
+    @Override
+    public void onConnectionLost(String id, String msg) {
+        mEvents.add("lost:" + id);
+    }
+
+    @Override
+    public void onReconnecting(String id, int attempt, long delay) {
+        mEvents.add("reconnecting:" + id);
+    }
+
+    @Override
+    public void onData(String id) {
+    }
+
+    @Override
+    public void onBufferOverflow(String id) {
+        mEvents.add("overflow:" + id);
+    }
+
+    @Override
+    public void onError(Exception e) {
+    }
+
+    @Override
+    public boolean isLoggable(int priority) {
+        return priority >= WARN;
+    }
+
+    @Override
+    public void d(String message) {
+    }
+
+    @Override
+    public void i(String message) {
+    }
+
+    @Override
+    public void w(String message) {
+        System.out.println(message);
+    }
+
+    @Override
+    public void e(String message, Throwable e) {
+        System.out.println(message + ": " + e);
+    }
+}
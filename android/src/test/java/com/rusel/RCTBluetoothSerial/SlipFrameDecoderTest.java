@@ -0,0 +1,80 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SlipFrameDecoderTest {
+    private static final int END = 0xC0;
+    private static final int ESC = 0xDB;
+    private static final int ESC_END = 0xDC;
+    private static final int ESC_ESC = 0xDD;
+
+    private final RingBuffer mBuffer = new RingBuffer(256);
+    private final Frame mFrame = new Frame(2);
+
+    @Test
+    public void escapesAreDecoded() {
+        FrameDecoder decoder = new SlipFrameDecoder(64);
+        write(1, ESC, ESC_END, 2, ESC, ESC_ESC, END);
+
+        assertFrame(decoder, 1, END, 2, ESC);
+    }
+
+    @Test
+    public void escapeSplitBetweenReads() {
+        FrameDecoder decoder = new SlipFrameDecoder(64);
+        write(1, ESC);
+        assertFalse(decoder.decode(mBuffer, mFrame));
+        assertEquals("Partial frame is taken from buffer", 0, mBuffer.size());
+        write(ESC_END, END);
+
+        assertFrame(decoder, 1, END);
+    }
+
+    @Test
+    public void emptyFramesAreSkipped() {
+        FrameDecoder decoder = new SlipFrameDecoder(64);
+        write(END, END, 5, END);
+
+        assertFrame(decoder, 5);
+        assertFalse(decoder.decode(mBuffer, mFrame));
+    }
+
+    @Test
+    public void tooLongFrameIsDroppedAndNextOneDecoded() {
+        FrameDecoder decoder = new SlipFrameDecoder(2);
+        write(1, 2, 3, END, 4, END);
+
+        assertFrame(decoder, 4);
+    }
+
+    @Test
+    public void copyHasNoPartialFrame() {
+        FrameDecoder decoder = new SlipFrameDecoder(64);
+        write(1, 2);
+        decoder.decode(mBuffer, mFrame);
+        FrameDecoder copy = decoder.copy();
+        write(3, END);
+
+        assertFrame(copy, 3);
+    }
+
+    private void write(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) bytes[i] = (byte) values[i];
+        mBuffer.write(bytes, 0, bytes.length);
+    }
+
+    private void assertFrame(FrameDecoder decoder, int... expected) {
+        assertTrue("No frame", decoder.decode(mBuffer, mFrame));
+        byte[] bytes = new byte[expected.length];
+        for (int i = 0; i < expected.length; i++) bytes[i] = (byte) expected[i];
+        assertArrayEquals(bytes, Arrays.copyOf(mFrame.data, mFrame.length));
+    }
+}
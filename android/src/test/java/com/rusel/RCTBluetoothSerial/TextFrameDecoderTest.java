@@ -0,0 +1,131 @@
+package com.rusel.RCTBluetoothSerial;
+
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TextFrameDecoderTest {
+    private static final String[] LINES = {"\r\n", "\n"};
+
+    private final RingBuffer mBuffer = new RingBuffer(1024);
+    private final Frame mFrame = new Frame(16);
+
+    @Test
+    public void longerDelimiterWins() {
+        TextFrameDecoder decoder = decoder("UTF-8", true);
+        feed("one\r\ntwo\n", "UTF-8");
+
+        assertLine(decoder, "one");
+        assertLine(decoder, "two");
+        assertFalse(decoder.decode(mBuffer, mFrame));
+    }
+
+    @Test
+    public void multibyteCharacterSplitBetweenReads() {
+        TextFrameDecoder decoder = decoder("UTF-8", true);
+        byte[] bytes = "\u017elu\u0165ou\u010dk\u00fd\n".getBytes(Charset.forName("UTF-8"));
+
+        mBuffer.write(bytes, 0, 1); // First byte of two byte character
+        assertFalse(decoder.decode(mBuffer, mFrame));
+        mBuffer.write(bytes, 1, bytes.length - 1);
+
+        assertLine(decoder, "\u017elu\u0165ou\u010dk\u00fd");
+    }
+
+    @Test
+    public void delimiterMatchesOnlyOnCodeUnitBoundary() {
+        TextFrameDecoder decoder = decoder("UTF-16LE", true);
+        // U+0A00 is 00 0A in little endian, two of them have 0A 00 of LF in the middle
+        feed("\u0a00\u0a00\n", "UTF-16LE");
+
+        assertLine(decoder, "\u0a00\u0a00");
+    }
+
+    @Test
+    public void keptDelimiterIsPartOfText() {
+        TextFrameDecoder decoder = decoder("UTF-16BE", false);
+        feed("OK\r\n", "UTF-16BE");
+
+        assertLine(decoder, "OK\r\n");
+        assertEquals(8, mFrame.length);
+    }
+
+    @Test
+    public void incompleteLineStaysInBuffer() {
+        TextFrameDecoder decoder = decoder("UTF-8", true);
+        feed("par", "UTF-8");
+
+        assertFalse(decoder.decode(mBuffer, mFrame));
+        assertEquals(3, mBuffer.size());
+        feed("t\n", "UTF-8");
+        assertLine(decoder, "part");
+        assertEquals(0, mBuffer.size());
+    }
+
+    @Test
+    public void decoderStartsOverWhenBufferIsReadPastIt() {
+        TextFrameDecoder decoder = decoder("UTF-8", true);
+        feed("raw", "UTF-8");
+        assertFalse(decoder.decode(mBuffer, mFrame));
+
+        assertEquals("raw", new String(mBuffer.read()));
+        feed("line\n", "UTF-8");
+        assertLine(decoder, "line");
+    }
+
+    @Test
+    public void tooLongLineIsDroppedBeforeBufferFills() {
+        RingBuffer buffer = new RingBuffer(16);
+        TextFrameDecoder decoder = new TextFrameDecoder(LINES, Charset.forName("UTF-8"), 8, true, true);
+        byte[] bytes = "0123456789ABCDE".getBytes();
+        buffer.write(bytes, 0, bytes.length);
+
+        assertFalse(decoder.decode(buffer, mFrame));
+        assertTrue(buffer.size() < bytes.length);
+        bytes = "F\nok\n".getBytes();
+        buffer.write(bytes, 0, bytes.length);
+        assertTrue(decoder.decode(buffer, mFrame));
+        assertEquals("ok", mFrame.text);
+    }
+
+    @Test
+    public void strippedChecksumIsRemovedFromText() {
+        FrameChecksum checksum = FrameChecksum.named("xor").setLayout(0, 1, false).setHandling(true, false);
+        FrameDecoder decoder = new ChecksumFrameDecoder(decoder("UTF-8", false), checksum, null);
+        // Checksum of AB is 03, it is followed by kept delimiter
+        feed("AB\u0003\n", "UTF-8");
+
+        assertTrue("No line", decoder.decode(mBuffer, mFrame));
+        assertEquals("AB\n", mFrame.text);
+        assertEquals(3, mFrame.length);
+    }
+
+    @Test
+    public void charsetWithByteOrderMarkIsRejected() {
+        try {
+            decoder("UTF-16", true);
+            fail("UTF-16 was accepted");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("UTF-16"));
+        }
+    }
+
+    private TextFrameDecoder decoder(String charset, boolean strip) {
+        return new TextFrameDecoder(LINES, Charset.forName(charset), 256, strip, true);
+    }
+
+    private void feed(String text, String charset) {
+        byte[] bytes = text.getBytes(Charset.forName(charset));
+        mBuffer.write(bytes, 0, bytes.length);
+    }
+
+    private void assertLine(TextFrameDecoder decoder, String line) {
+        assertTrue("No line", decoder.decode(mBuffer, mFrame));
+        assertEquals(line, mFrame.text);
+    }
+}
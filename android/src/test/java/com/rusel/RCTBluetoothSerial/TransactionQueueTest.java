@@ -0,0 +1,74 @@
+package com.rusel.RCTBluetoothSerial;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionQueueTest {
+    private final TransactionQueue mQueue = new TransactionQueue();
+
+    @Test
+    public void requestsWithoutIdAreAnsweredInOrder() {
+        TransactionQueue.Transaction first = add(null, 0, null);
+        TransactionQueue.Transaction second = add(null, 0, null);
+
+        assertSame(first, mQueue.match(frame(9), null));
+        assertSame(second, mQueue.match(frame(8), null));
+        assertTrue(mQueue.isEmpty());
+        assertNull(mQueue.match(frame(7), null));
+    }
+
+    @Test
+    public void pipelinedRequestsAreMatchedById() {
+        TransactionQueue.Transaction first = add(new byte[] {1}, 1, null);
+        TransactionQueue.Transaction second = add(new byte[] {2}, 1, null);
+
+        assertSame(second, mQueue.match(frame(0x55, 2), null));
+        assertNull("Frame with unknown id is not a response", mQueue.match(frame(0x55, 3), null));
+        assertNull("Frame too short for id", mQueue.match(frame(0x55), null));
+        assertSame(first, mQueue.match(frame(0x55, 1), null));
+        assertTrue(mQueue.isEmpty());
+    }
+
+    @Test
+    public void framesAnswerOnlyRequestsWithSameFraming() {
+        FrameDecoder slip = new SlipFrameDecoder(64);
+        TransactionQueue.Transaction device = add(null, 0, null);
+        TransactionQueue.Transaction own = add(null, 0, slip);
+
+        assertNull(mQueue.getDecoder());
+        assertSame(own, mQueue.match(frame(1), slip));
+        assertTrue(mQueue.uses(null));
+        assertFalse(mQueue.uses(slip));
+        assertSame(device, mQueue.match(frame(2), null));
+    }
+
+    @Test
+    public void oldestRequestSelectsFraming() {
+        FrameDecoder slip = new SlipFrameDecoder(64);
+        add(null, 0, slip);
+        TransactionQueue.Transaction device = add(null, 0, null);
+
+        assertSame(slip, mQueue.getDecoder());
+        mQueue.match(frame(1), slip);
+        assertNull(mQueue.getDecoder());
+        assertTrue(mQueue.remove(device));
+        assertFalse(mQueue.remove(device));
+    }
+
+    private TransactionQueue.Transaction add(byte[] id, int responseIdOffset, FrameDecoder decoder) {
+        TransactionQueue.Transaction transaction = new TransactionQueue.Transaction(null, id, responseIdOffset, decoder);
+        mQueue.add(transaction);
+        return transaction;
+    }
+
+    private static Frame frame(int... values) {
+        Frame frame = new Frame(values.length);
+        for (int i = 0; i < values.length; i++) frame.data[i] = (byte) values[i];
+        frame.length = values.length;
+        return frame;
+    }
+}
@@ -1,6 +1,6 @@
 const ReactNative = require('react-native')
 const { Buffer } = require('buffer')
-const { NativeModules, DeviceEventEmitter } = ReactNative
+const { NativeModules, DeviceEventEmitter, Platform } = ReactNative
 const BluetoothSerial = NativeModules.BluetoothSerial
 
 /**
@@ -23,15 +23,84 @@ BluetoothSerial.removeListener = (eventName, handler) => {
 
 /**
  * Write data to device, you can pass string or buffer,
- * We must convert to base64 in RN there is no way to pass buffer directly
+ * We must convert to base64 in RN there is no way to pass buffer directly.
+ * On android strings are passed as they are and encoded to UTF-8 natively
  * @param  {Buffer|String} data
  * @return {Promise<Boolean>}
  */
 BluetoothSerial.write = (data) => {
   if (typeof data === 'string') {
+    if (Platform.OS === 'android') {
+      return BluetoothSerial.writeText(data, 'UTF-8')
+    }
     data = new Buffer(data)
   }
   return BluetoothSerial.writeToDevice(data.toString('base64'))
 }
 
+/**
+ * Write data to one of connected devices, you can pass string or buffer
+ * @param  {String} id Device id
+ * @param  {Buffer|String} data
+ * @return {Promise<Boolean>}
+ */
+BluetoothSerial.writeTo = (id, data) => {
+  if (typeof data === 'string') {
+    if (Platform.OS === 'android') {
+      return BluetoothSerial.writeTextTo(id, data, 'UTF-8')
+    }
+    data = new Buffer(data)
+  }
+  return BluetoothSerial.writeToConnection(id, data.toString('base64'))
+}
+
+/**
+ * Send request to device and wait for its response, you can pass string or buffer
+ * @param  {Buffer|String} data Request
+ * @param  {Object} options Matching of response, see README
+ * @return {Promise<String>} Response encoded like read data
+ */
+BluetoothSerial.transact = (data, options) => {
+  if (typeof data === 'string') {
+    data = new Buffer(data)
+  }
+  return BluetoothSerial.transactToDevice(data.toString('base64'), options || null)
+}
+
+/**
+ * Send request to one of connected devices and wait for its response
+ * @param  {String} id Device id
+ * @param  {Buffer|String} data Request
+ * @param  {Object} options Matching of response, see README
+ * @return {Promise<String>} Response encoded like read data
+ */
+BluetoothSerial.transactWith = (id, data, options) => {
+  if (typeof data === 'string') {
+    data = new Buffer(data)
+  }
+  return BluetoothSerial.transactWithDevice(id, data.toString('base64'), options || null)
+}
+
+/**
+ * Read all buffered data as buffer, binary mode must be enabled
+ * with withBinaryMode(true) otherwise data are not base64 encoded
+ * @return {Promise<Buffer>}
+ */
+BluetoothSerial.readBuffer = () => {
+  return BluetoothSerial.readFromDevice()
+    .then((data) => new Buffer(data, 'base64'))
+}
+
+/**
+ * Decode data of rawData event into buffer, batched event into array of buffers
+ * @param  {Object} event rawData event
+ * @return {Buffer|Array<Buffer>}
+ */
+BluetoothSerial.toBuffer = (event) => {
+  if (Array.isArray(event.data)) {
+    return event.data.map((data) => new Buffer(data, 'base64'))
+  }
+  return new Buffer(event.data, 'base64')
+}
+
 module.exports = BluetoothSerial